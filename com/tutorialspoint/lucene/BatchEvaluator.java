@@ -0,0 +1,611 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Evaluates a whole query file term-at-a-time, sharing postings traversals between queries.
+ * 
+ * The queries are grouped by clause: a clause is a single term (basic mode), or the title/body
+ * pair of a term (advanced mode). Every distinct clause's postings are traversed once per batch,
+ * and its contribution is added to the accumulators of all the queries that use it.
+ * The accumulators are dense per-query arrays, with a list of the documents every query touched
+ * (so the top-k selection and the reset never scan the whole index), and the number of queries
+ * per batch is bounded by the memory budget.
+ * 
+ * The scores are computed with the same formulas (and normalization) as Lucene's TermScorer and
+ * BooleanScorer, but the accumulators add the clauses up in traversal order, which may differ from
+ * the query's in the last float bits. So the accumulators only select the candidates: every document
+ * whose accumulated score is within the rounding error of the k-th one is rescored exactly the way
+ * BooleanScorer does it (float sum in reverse clause order, coord applied last), and the top-k
+ * is taken from the exact scores. The top-k lists are then the same as the per-query search.
+ * Queries that aren't disjunctions of such clauses are searched one-by-one.
+ * 
+ * @author amir
+ * 
+ */
+public class BatchEvaluator {
+
+	/**
+	 * A distinct clause, and all the queries (of the current batch) that use it.
+	 * 
+	 */
+	private static class Clause {
+		Term[] terms; 											// The clause's terms (title/body pair, or a single term)
+		List<Use> uses = new ArrayList<Use>(); 					// Queries that use this clause
+	}
+
+	/**
+	 * A single use of a clause, by one query.
+	 * 
+	 */
+	private static class Use {
+		int slot; 												// The query's accumulator
+		Clause clause; 											// The clause
+		float[] weights; 										// Normalized weight of every term, for this query
+	}
+
+	/**
+	 * A query of the current batch.
+	 * 
+	 */
+	private static class Plan {
+		QueryRecord query; 										// The query
+		Use[] uses; 											// Its clauses, in query order
+		float[] coordFactors; 									// coord(overlap, numClauses)
+		boolean isBatched; 										// False if it has to be searched on its own
+	}
+
+	private Searcher searcher; 									// Parses queries, and searches the unsupported ones
+	private IndexSearcher indexSearcher; 						// For weights and normalization
+	private IndexReader reader; 								// Traversed term-at-a-time
+	private Similarity similarity; 								// For tf() and norms
+	private Map<String,byte[]> norms; 							// Norms, by field
+	private int batchSize; 										// Queries per batch
+
+	private float[][] scores; 									// Score accumulators, by slot and doc
+	private short[][] overlaps; 								// Number of clauses matched, by slot and doc
+	private int[][] touched; 									// Documents matched, by slot (in traversal order)
+	private int[] touchedCount; 								// Number of documents matched, by slot
+
+	private long postingsDecoded; 								// Postings decoded by the batch evaluation
+	private long postingsSequential; 							// Postings the per-query evaluation would decode
+	private int queriesBatched; 								// Queries evaluated term-at-a-time
+	private int queriesSearched; 								// Queries that had to be searched one-by-one
+
+	/**
+	 * Constructor.
+	 * The memory budget bounds the accumulators (10 bytes per document per query in a batch, at worst).
+	 * 
+	 * @param searcher
+	 * @param memoryBytes
+	 * @throws IOException
+	 */
+	public BatchEvaluator(Searcher searcher, long memoryBytes) throws IOException {
+
+		this.searcher = searcher;
+		indexSearcher = searcher.getIndexSearcher();
+		reader = indexSearcher.getIndexReader();
+		similarity = indexSearcher.getSimilarity();
+		norms = new HashMap<String,byte[]>();
+
+		int maxDoc = Math.max(1, reader.maxDoc());
+		batchSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBytes / (10L * maxDoc)));
+
+	}
+
+	/**
+	 * Evaluates all the queries, in batches, and feeds every query's results to the consumers
+	 * (in the original query order).
+	 * 
+	 * @param queries
+	 * @param results
+	 * @param consumers
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void run(List<QueryRecord> queries, ResultBuffer results, List<ResultConsumer> consumers) throws IOException, ParseException {
+
+		System.out.println("Batch evaluation: " + queries.size() + " queries, " + batchSize + " per batch");
+
+		for (int from = 0; from < queries.size(); from += batchSize) {
+			runBatch(queries.subList(from, Math.min(queries.size(), from + batchSize)), results, consumers);
+		}
+
+	}
+
+	/**
+	 * Evaluates a single batch.
+	 * 
+	 * @param batch
+	 * @param results
+	 * @param consumers
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void runBatch(List<QueryRecord> batch, ResultBuffer results, List<ResultConsumer> consumers) throws IOException, ParseException {
+
+		// Allocate the accumulators once, and reuse them for every batch (they're reset after every query)
+		int maxDoc = reader.maxDoc();
+		if (scores == null) {
+			scores = new float[Math.min(batchSize, batch.size())][maxDoc];
+			overlaps = new short[scores.length][maxDoc];
+			touched = new int[scores.length][16];
+			touchedCount = new int[scores.length];
+		}
+
+		// Plan the queries and group them by clause
+		Plan[] plans = new Plan[batch.size()];
+		Map<String,Clause> clauses = new LinkedHashMap<String,Clause>();
+		for (int slot = 0; slot < plans.length; slot++) {
+			plans[slot] = plan(slot, batch.get(slot), clauses);
+		}
+
+		// Traverse every clause's postings once, for all the queries that use it
+		for (Clause clause : clauses.values()) {
+			traverse(clause);
+		}
+
+		// Emit the results, in query order
+		for (int slot = 0; slot < plans.length; slot++) {
+
+			Plan plan = plans[slot];
+			System.out.print("\nQueryID #" + plan.query.id + ": ");
+
+			if (plan.isBatched) {
+
+				// Select the top-k from the accumulators, then from the exact scores
+				select(plan, slot, results);
+				queriesBatched++;
+				Metrics.QUERIES_COMPLETED.inc();
+
+			} else {
+
+				// Search it on its own
+				searcher.search(plan.query.text, results);
+				queriesSearched++;
+
+			}
+
+			System.out.println(results.getTotalHits() + " documents found");
+			for (ResultConsumer consumer : consumers) {
+				consumer.consume(plan.query.id, results);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Selects the top-k of a batched query into the buffer, and resets its accumulators.
+	 * 
+	 * @param plan
+	 * @param slot
+	 * @param results
+	 * @throws IOException
+	 */
+	private void select(Plan plan, int slot, ResultBuffer results) throws IOException {
+
+		float[] slotScores = scores[slot];
+		short[] slotOverlaps = overlaps[slot];
+		int[] docs = touched[slot];
+		int count = touchedCount[slot];
+
+		// The top-k by accumulated score
+		results.clear(plan.query.text);
+		searcher.resolveDocIDs(results);
+		TopHitsCollector collector = new TopHitsCollector(results);
+		for (int i = 0; i < count; i++) {
+			int doc = docs[i];
+			collector.add(doc, slotScores[doc] * plan.coordFactors[slotOverlaps[doc]]);
+		}
+		collector.finish();
+
+		// The candidates: every document within the rounding error of the k-th score
+		// (both sums are within numClauses float roundings of the real one)
+		int[] candidates = docs;
+		int numCandidates = count;
+		if (results.size() < count && results.getScore(results.size() - 1) > 0) {
+			double slack = 4.0 * (plan.uses.length + 2) / (1 << 24);
+			float threshold = (float) (results.getScore(results.size() - 1) * (1 - slack));
+			candidates = new int[results.size() * 2];
+			numCandidates = 0;
+			for (int i = 0; i < count; i++) {
+				int doc = docs[i];
+				if (slotScores[doc] * plan.coordFactors[slotOverlaps[doc]] >= threshold) {
+					if (numCandidates == candidates.length) {
+						candidates = Arrays.copyOf(candidates, numCandidates * 2);
+					}
+					candidates[numCandidates++] = doc;
+				}
+			}
+		}
+
+		// The top-k by exact score (totalHits is every matching document)
+		float[] exact = rescore(plan, candidates, numCandidates);
+		results.clear(plan.query.text);
+		searcher.resolveDocIDs(results);
+		collector = new TopHitsCollector(results);
+		for (int i = 0; i < numCandidates; i++) {
+			collector.add(candidates[i], exact[i]);
+		}
+		collector.finish();
+		results.totalHits = count;
+
+		// Reset the accumulators for the next batch
+		for (int i = 0; i < count; i++) {
+			slotScores[docs[i]] = 0;
+			slotOverlaps[docs[i]] = 0;
+		}
+		touchedCount[slot] = 0;
+
+	}
+
+	/**
+	 * Scores the candidate documents of a query exactly the way the per-query search does:
+	 * every clause as its scorer does (a term as TermScorer, a title/body pair as DisjunctionSumScorer),
+	 * added up in a float in reverse clause order (BooleanScorer's sub-scorer list), then coordinated.
+	 * Sorts the candidates by docID, and returns their scores in the same order.
+	 * 
+	 * @param plan
+	 * @param candidates
+	 * @param numCandidates
+	 * @return
+	 * @throws IOException
+	 */
+	private float[] rescore(Plan plan, int[] candidates, int numCandidates) throws IOException {
+
+		Arrays.sort(candidates, 0, numCandidates);
+		float[] exact = new float[numCandidates];
+		int[] overlap = new int[numCandidates];
+		double[] clauseScores = new double[numCandidates];
+		boolean[] isMatched = new boolean[numCandidates];
+
+		for (int i = plan.uses.length - 1; i >= 0; i--) {
+
+			Use use = plan.uses[i];
+			Arrays.fill(clauseScores, 0);
+			Arrays.fill(isMatched, false);
+
+			// The clause's terms, skipping to the candidates
+			for (int j = 0; j < use.clause.terms.length; j++) {
+				Term term = use.clause.terms[j];
+				byte[] termNorms = getNorms(term.field());
+				TermDocs td = reader.termDocs(term);
+				try {
+					boolean hasMore = td.next();
+					for (int c = 0; c < numCandidates && hasMore; c++) {
+						if (td.doc() < candidates[c]) {
+							hasMore = td.skipTo(candidates[c]);
+						}
+						if (hasMore && td.doc() == candidates[c]) {
+							postingsDecoded++;
+							float termScore = similarity.tf(td.freq()) * use.weights[j];
+							if (termNorms != null) {
+								termScore *= similarity.decodeNormValue(termNorms[td.doc()]);
+							}
+							clauseScores[c] += termScore;
+							isMatched[c] = true;
+						}
+					}
+				} finally {
+					td.close();
+				}
+			}
+
+			// Add the clause to the documents it matches
+			for (int c = 0; c < numCandidates; c++) {
+				if (isMatched[c]) {
+					exact[c] = overlap[c] == 0 ? (float) clauseScores[c] : exact[c] + (float) clauseScores[c];
+					overlap[c]++;
+				}
+			}
+
+		}
+
+		for (int c = 0; c < numCandidates; c++) {
+			exact[c] *= plan.coordFactors[overlap[c]];
+		}
+		return exact;
+
+	}
+
+	/**
+	 * Parses the query, normalizes its weights, and registers its clauses.
+	 * 
+	 * @param slot
+	 * @param query
+	 * @param clauses
+	 * @return
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private Plan plan(int slot, QueryRecord query, Map<String,Clause> clauses) throws IOException, ParseException {
+
+		Plan plan = new Plan();
+		plan.query = query;
+
+		// A single term is a disjunction of one clause, with no coord
+		Query parsed = indexSearcher.rewrite(searcher.parse(query.text));
+		BooleanQuery booleanQuery;
+		if (parsed instanceof TermQuery) {
+			booleanQuery = new BooleanQuery(true);
+			booleanQuery.add(parsed, BooleanClause.Occur.SHOULD);
+		} else if (MaxScoreEvaluator.isDisjunction(parsed)) {
+			booleanQuery = (BooleanQuery) parsed;
+		} else {
+			return plan;
+		}
+
+		// Every clause must be a term, or a coord-less disjunction of terms
+		BooleanClause[] queryClauses = booleanQuery.getClauses();
+		Term[][] terms = new Term[queryClauses.length][];
+		for (int i = 0; i < queryClauses.length; i++) {
+			terms[i] = clauseTerms(queryClauses[i].getQuery());
+			if (terms[i] == null) {
+				return plan;
+			}
+		}
+
+		// Normalize the weights, the same way the searcher does
+		Weight[] weights = new Weight[queryClauses.length];
+		float norm = MaxScoreEvaluator.normalizeClauses(indexSearcher, booleanQuery, weights);
+
+		// Register the clauses
+		plan.uses = new Use[queryClauses.length];
+		for (int i = 0; i < queryClauses.length; i++) {
+
+			Query clauseQuery = queryClauses[i].getQuery();
+			Use use = new Use();
+			use.slot = slot;
+			plan.uses[i] = use;
+			use.weights = new float[terms[i].length];
+			if (clauseQuery instanceof TermQuery) {
+				use.weights[0] = weights[i].getValue();
+			} else {
+				BooleanClause[] subClauses = ((BooleanQuery) clauseQuery).getClauses();
+				for (int j = 0; j < subClauses.length; j++) {
+					Weight weight = subClauses[j].getQuery().createWeight(indexSearcher);
+					weight.sumOfSquaredWeights();
+					weight.normalize(norm * clauseQuery.getBoost());
+					use.weights[j] = weight.getValue();
+				}
+			}
+
+			String key = Arrays.toString(terms[i]);
+			Clause clause = clauses.get(key);
+			if (clause == null) {
+				clause = new Clause();
+				clause.terms = terms[i];
+				clauses.put(key, clause);
+			}
+			use.clause = clause;
+			clause.uses.add(use);
+
+		}
+
+		// BooleanScorer's coord factors (all clauses count in maxCoord)
+		plan.coordFactors = new float[queryClauses.length + 1];
+		for (int i = 0; i <= queryClauses.length; i++) {
+			plan.coordFactors[i] = booleanQuery.isCoordDisabled() ? 1.0f : similarity.coord(i, queryClauses.length);
+		}
+		plan.isBatched = true;
+
+		return plan;
+
+	}
+
+	/**
+	 * Returns the terms of a supported clause, or null if it isn't supported.
+	 * 
+	 * @param query
+	 * @return
+	 */
+	private Term[] clauseTerms(Query query) {
+
+		if (query instanceof TermQuery) {
+			return new Term[] {((TermQuery) query).getTerm()};
+		}
+
+		if (!MaxScoreEvaluator.isDisjunction(query) || !((BooleanQuery) query).isCoordDisabled()) {
+			return null;
+		}
+		BooleanClause[] subClauses = ((BooleanQuery) query).getClauses();
+		Term[] terms = new Term[subClauses.length];
+		for (int j = 0; j < subClauses.length; j++) {
+			if (!(subClauses[j].getQuery() instanceof TermQuery)) {
+				return null;
+			}
+			terms[j] = ((TermQuery) subClauses[j].getQuery()).getTerm();
+		}
+		return terms;
+
+	}
+
+	/**
+	 * Traverses the clause's postings once (merging its terms' postings, doc by doc),
+	 * and adds its score to the accumulators of every query that uses it.
+	 * 
+	 * @param clause
+	 * @throws IOException
+	 */
+	private void traverse(Clause clause) throws IOException {
+
+		int numTerms = clause.terms.length;
+		TermDocs[] termDocs = new TermDocs[numTerms];
+		byte[][] termNorms = new byte[numTerms][];
+		int[] docs = new int[numTerms];
+		float[] tfs = new float[numTerms];
+
+		try {
+
+			// Position every term on its first posting
+			for (int j = 0; j < numTerms; j++) {
+				termDocs[j] = reader.termDocs(clause.terms[j]);
+				termNorms[j] = getNorms(clause.terms[j].field());
+				docs[j] = next(termDocs[j], j, tfs);
+			}
+
+			while (true) {
+
+				// The next document is the smallest one among the terms
+				int doc = Integer.MAX_VALUE;
+				for (int j = 0; j < numTerms; j++) {
+					doc = Math.min(doc, docs[j]);
+				}
+				if (doc == Integer.MAX_VALUE) {
+					break;
+				}
+
+				// Add the clause's score to every query that uses it (TermScorer: tf * weight * norm)
+				for (Use use : clause.uses) {
+					float score = 0;
+					for (int j = 0; j < numTerms; j++) {
+						if (docs[j] == doc) {
+							float termScore = tfs[j] * use.weights[j];
+							if (termNorms[j] != null) {
+								termScore *= similarity.decodeNormValue(termNorms[j][doc]);
+							}
+							score += termScore;
+						}
+					}
+					scores[use.slot][doc] += score;
+					if (overlaps[use.slot][doc]++ == 0) {
+						touch(use.slot, doc);
+					}
+				}
+
+				// Move on
+				for (int j = 0; j < numTerms; j++) {
+					if (docs[j] == doc) {
+						docs[j] = next(termDocs[j], j, tfs);
+					}
+				}
+
+			}
+
+		} finally {
+			for (TermDocs td : termDocs) {
+				if (td != null) {
+					td.close();
+				}
+			}
+		}
+
+		// Count the postings: decoded once here, once per use by the per-query evaluation
+		long postings = 0;
+		for (Term term : clause.terms) {
+			postings += reader.docFreq(term);
+		}
+		postingsSequential += postings * clause.uses.size();
+
+	}
+
+	/**
+	 * Adds a document to the list of the documents a query matched.
+	 * 
+	 * @param slot
+	 * @param doc
+	 */
+	private void touch(int slot, int doc) {
+
+		int[] docs = touched[slot];
+		if (touchedCount[slot] == docs.length) {
+			docs = Arrays.copyOf(docs, Math.min(reader.maxDoc(), docs.length * 2));
+			touched[slot] = docs;
+		}
+		docs[touchedCount[slot]++] = doc;
+
+	}
+
+	/**
+	 * Moves the term to its next posting, and returns its doc (or Integer.MAX_VALUE at the end).
+	 * 
+	 * @param td
+	 * @param j
+	 * @param tfs
+	 * @return
+	 * @throws IOException
+	 */
+	private int next(TermDocs td, int j, float[] tfs) throws IOException {
+
+		if (!td.next()) {
+			return Integer.MAX_VALUE;
+		}
+		postingsDecoded++;
+		tfs[j] = similarity.tf(td.freq());
+		return td.doc();
+
+	}
+
+	/**
+	 * Returns the field's norms (loaded once).
+	 * 
+	 * @param field
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] getNorms(String field) throws IOException {
+
+		if (!norms.containsKey(field)) {
+			norms.put(field, reader.norms(field));
+		}
+		return norms.get(field);
+
+	}
+
+	/**
+	 * Returns the number of postings decoded by the batch evaluation.
+	 * 
+	 * @return
+	 */
+	public long getPostingsDecoded() {
+		return postingsDecoded;
+	}
+
+	/**
+	 * Returns the number of postings the per-query evaluation would have decoded
+	 * (for the batched queries).
+	 * 
+	 * @return
+	 */
+	public long getPostingsSequential() {
+		return postingsSequential;
+	}
+
+	/**
+	 * Returns the number of queries evaluated term-at-a-time.
+	 * 
+	 * @return
+	 */
+	public int getQueriesBatched() {
+		return queriesBatched;
+	}
+
+	/**
+	 * Returns the number of queries that were searched one-by-one.
+	 * 
+	 * @return
+	 */
+	public int getQueriesSearched() {
+		return queriesSearched;
+	}
+
+}
@@ -1,13 +1,11 @@
 package com.tutorialspoint.lucene;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
+import java.util.Set;
 
 /**
  * Holds the truth and calculates statistics.
@@ -15,7 +13,7 @@ import org.apache.lucene.search.TopDocs;
  * @author amir
  *
  */
-public class Benchmark {
+public class Benchmark implements ResultConsumer {
 	
 	private Truth truth; 					// Golden standard
 	private Map<String,myQuery> queries; 	// Dictionary of queryID -> myQuery objects
@@ -38,17 +36,14 @@ public class Benchmark {
 	}
 	
 	/**
-	 * Analyzes the query:
+	 * Analyzes the query from a collected result buffer:
 	 * 	- Calculates Precision@K for every K from 1 to LuceneConstants.MAX_SEARCH
 	 * 	- Calculates the Average Precision
 	 * 
 	 * @param queryID
 	 * @param results
-	 * @param searcher
-	 * @throws CorruptIndexException
-	 * @throws IOException
 	 */
-	public void analyzeQuery(String queryID, TopDocs results, Searcher searcher) throws CorruptIndexException, IOException {
+	public void analyzeQuery(String queryID, ResultBuffer results) {
 		
 		// No duplicate queryIDs allowed
 		if (queries.containsKey(queryID)) {
@@ -57,31 +52,21 @@ public class Benchmark {
 		
 		// Initialize a new myQuery object and save it in the dictionary
 		myQuery query = new myQuery();
+		query.isTruncated = results.isTruncated();
 		queries.put(queryID, query);
 		
-		// If no results were found, leave it as is (all zeros)
-		if (results.totalHits == 0) {
-			return;
-		}
-		
-		int kCounter = 0; 			// Counts the total number of documents
 		int relevantCounter = 0; 	// Counts the number of relevant documents
-		for(ScoreDoc scoreDoc : results.scoreDocs) {
-
-			// Always increment the documents counter
-			kCounter++;
+		for (int k = 1; k <= results.size(); k++) {
 			
 			// If the document is relevant, increment the relevant documents counter,
 			// and also the average precision (it only sums on relevant documents)
-			Document doc = searcher.getDocument(scoreDoc);
-			String docID = doc.get(LuceneConstants.DOCID);
-			if (truth.isRelevant(queryID, docID)) {
+			if (isRelevant(queryID, results, k - 1)) {
 				relevantCounter++;
-				query.averagePrecision += relevantCounter*1.0 / kCounter;
+				query.averagePrecision += relevantCounter*1.0 / k;
 			}
 			
 			// Save prec@k
-			query.precisionAt[kCounter] = relevantCounter*1.0 / kCounter;
+			query.precisionAt[k] = relevantCounter*1.0 / k;
 			
 		}
 		
@@ -92,6 +77,35 @@ public class Benchmark {
 		
 	}
 	
+	/**
+	 * Checks if the result at the given rank (0 based) is relevant,
+	 * by its numeric docID if the buffer has them.
+	 * 
+	 * @param queryID
+	 * @param results
+	 * @param i
+	 * @return
+	 */
+	private boolean isRelevant(String queryID, ResultBuffer results, int i) {
+		
+		if (results.hasNumericDocIDs()) {
+			return truth.isRelevant(queryID, results.getNumericDocID(i));
+		}
+		return truth.isRelevant(queryID, results.getDocID(i));
+		
+	}
+	
+	/**
+	 * Analyzes the query and prints its statistics.
+	 * 
+	 */
+	public void consume(String queryID, ResultBuffer results) throws IOException {
+		
+		analyzeQuery(queryID, results);
+		printQueryStatistics(queryID);
+		
+	}
+	
 	/**
 	 * Prints the query statistics (prec@5, prec@10).
 	 * 
@@ -109,7 +123,165 @@ public class Benchmark {
 		System.out.println("Prec@5 = "  + query.precisionAt[5]);
 		System.out.println("Prec@10 = " + query.precisionAt[10]);
 		System.out.println("AP = "      + query.averagePrecision);
+		if (query.isTruncated) {
+			System.out.println("Truncated (partial results)");
+		}
+		
+	}
+	
+	/**
+	 * Calculates the Average Precision of the given results, without recording the query.
+	 * 
+	 * @param queryID
+	 * @param results
+	 * @return
+	 */
+	public double averagePrecision(String queryID, ResultBuffer results) {
+		
+		double averagePrecision = 0;
+		int relevantCounter = 0;
+		for (int k = 1; k <= results.size(); k++) {
+			if (isRelevant(queryID, results, k - 1)) {
+				relevantCounter++;
+				averagePrecision += relevantCounter*1.0 / k;
+			}
+		}
+		
+		return relevantCounter == 0 ? 0 : averagePrecision / relevantCounter;
+		
+	}
+	
+	/**
+	 * Returns the IDs of the analyzed queries.
+	 * 
+	 * @return
+	 */
+	public Set<String> getQueryIDs() {
+		return queries.keySet();
+	}
+	
+	/**
+	 * Returns the statistics of the given query (null if it wasn't analyzed).
+	 * 
+	 * @param queryID
+	 * @return
+	 */
+	public myQuery getQuery(String queryID) {
+		return queries.get(queryID);
+	}
+	
+	/**
+	 * Analyzes every query of a binary run, straight from its columns.
+	 * 
+	 * @param run
+	 */
+	public void evaluate(BinaryRunReader run) {
+		
+		ResultBuffer results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+		for (int i = 0; i < run.size(); i++) {
+			String queryID = run.getQueryID(i);
+			run.read(queryID, results);
+			analyzeQuery(queryID, results);
+		}
+		
+	}
+	
+	/**
+	 * Saves the accumulators (for a checkpoint).
+	 * For every query we keep its AP, and the ranks of its relevant results,
+	 * from which the prec@k array is rebuilt.
+	 * 
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public void save(DataOutputStream outputStream) throws IOException {
+		
+		outputStream.writeInt(queries.size());
+		for (Map.Entry<String,myQuery> entry : queries.entrySet()) {
+			
+			myQuery query = entry.getValue();
+			outputStream.writeUTF(entry.getKey());
+			outputStream.writeDouble(query.averagePrecision);
+			outputStream.writeBoolean(query.isTruncated);
+			
+			// Results end where prec@k drops to 0 after a relevant one
+			int size = 0;
+			for (int k = 1; k <= LuceneConstants.MAX_SEARCH; k++) {
+				if (query.precisionAt[k] > 0) {
+					size = k;
+				}
+			}
+			outputStream.writeInt(size);
+			
+			// The relevant ranks are where the relevant count goes up
+			int previous = 0;
+			for (int k = 1; k <= size; k++) {
+				int relevant = (int) Math.round(query.precisionAt[k] * k);
+				if (relevant > previous) {
+					outputStream.writeInt(k);
+					previous = relevant;
+				}
+			}
+			outputStream.writeInt(0);
+			
+		}
+		
+	}
+	
+	/**
+	 * Restores the accumulators saved by save().
+	 * 
+	 * @param inputStream
+	 * @throws IOException
+	 */
+	public void load(DataInputStream inputStream) throws IOException {
+		
+		int count = inputStream.readInt();
+		for (int i = 0; i < count; i++) {
+			
+			myQuery query = new myQuery();
+			String queryID = inputStream.readUTF();
+			query.averagePrecision = inputStream.readDouble();
+			query.isTruncated = inputStream.readBoolean();
+			int size = inputStream.readInt();
+			
+			// Rebuild prec@k from the relevant ranks
+			int relevant = 0;
+			int next = inputStream.readInt();
+			for (int k = 1; k <= size; k++) {
+				if (k == next) {
+					relevant++;
+					next = inputStream.readInt();
+				}
+				query.precisionAt[k] = relevant*1.0 / k;
+			}
+			while (next != 0) {
+				next = inputStream.readInt();
+			}
+			
+			queries.put(queryID, query);
+			
+		}
+		
+	}
+	
+	/**
+	 * Calculate the mean Precision@K over all the queries.
+	 * 
+	 * @param k
+	 * @return
+	 */
+	public double calculateMeanPrecisionAt(int k) {
+		
+		double mean = 0;
+		for (myQuery query : queries.values()) {
+			mean += query.precisionAt[k];
+		}
+		if (queries.size() != 0) {
+			mean /= queries.size();
+		}
 		
+		return mean;
 	}
 	
 	/**
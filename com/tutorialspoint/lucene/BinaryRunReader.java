@@ -0,0 +1,192 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a binary columnar run (see BinaryRunWriter).
+ * The docs and scores columns are memory-mapped, so any query's results are read
+ * by random access, without parsing the rest of the run. The query directory and
+ * the docID dictionary are loaded on open.
+ * 
+ * The columns are mapped as single buffers, so a run is limited to about 500 million rows.
+ * 
+ * @author amir
+ * 
+ */
+public class BinaryRunReader {
+
+	private IntBuffer docs; 					// Docs column (dictionary numbers)
+	private FloatBuffer scores; 				// Scores column
+	private String[] queryIDs; 					// Query IDs, in run order
+	private Map<String,Integer> queries; 		// queryID -> position in the directory
+	private int[] firstRows; 					// First row of every query
+	private int[] sizes; 						// Number of rows of every query
+	private int[] totalHits; 					// Total hits of every query
+	private boolean[] truncated; 				// Truncated flag of every query
+	private String[] dictionary; 				// dictionary number -> docID
+	
+	/**
+	 * Constructor. Opens and maps the run.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public BinaryRunReader(String file) throws IOException {
+		
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		long directoryOffset;
+		int dictionarySize;
+		
+		try {
+			
+			// Header
+			FileChannel channel = input.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryRunWriter.HEADER_SIZE);
+			if (header.getInt() != BinaryRunWriter.MAGIC || header.getInt() != BinaryRunWriter.VERSION) {
+				throw new IOException("'" + file + "' is not a binary run (or has an unknown version)");
+			}
+			int queryCount = header.getInt();
+			long rowCount = header.getLong();
+			dictionarySize = header.getInt();
+			long docsOffset = header.getLong();
+			long scoresOffset = header.getLong();
+			directoryOffset = header.getLong();
+			
+			if (rowCount * 4 > Integer.MAX_VALUE) {
+				throw new IOException("'" + file + "' is too large to map (" + rowCount + " rows)");
+			}
+			
+			// Map the columns (the mapping stays valid after the file is closed)
+			docs = channel.map(FileChannel.MapMode.READ_ONLY, docsOffset, rowCount * 4).asIntBuffer();
+			scores = channel.map(FileChannel.MapMode.READ_ONLY, scoresOffset, rowCount * 4).asFloatBuffer();
+			
+			queryIDs = new String[queryCount];
+			firstRows = new int[queryCount];
+			sizes = new int[queryCount];
+			totalHits = new int[queryCount];
+			truncated = new boolean[queryCount];
+			queries = new HashMap<String,Integer>();
+			
+		} finally {
+			input.close();
+		}
+		
+		// Directory and dictionary
+		DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			
+			skipFully(inputStream, directoryOffset);
+			for (int i = 0; i < queryIDs.length; i++) {
+				queryIDs[i] = inputStream.readUTF();
+				firstRows[i] = (int) inputStream.readLong();
+				sizes[i] = inputStream.readInt();
+				totalHits[i] = inputStream.readInt();
+				truncated[i] = inputStream.readBoolean();
+				queries.put(queryIDs[i], i);
+			}
+			
+			// The dictionary follows the directory
+			dictionary = new String[dictionarySize];
+			for (int i = 0; i < dictionarySize; i++) {
+				dictionary[i] = inputStream.readUTF();
+			}
+			
+		} finally {
+			inputStream.close();
+		}
+		
+	}
+	
+	/**
+	 * Returns the number of queries in the run.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return queryIDs.length;
+	}
+	
+	/**
+	 * Returns the ID of the i-th query of the run.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public String getQueryID(int i) {
+		return queryIDs[i];
+	}
+	
+	/**
+	 * Reads the results of the given query into the buffer (up to its capacity).
+	 * Returns false if the run doesn't have the query.
+	 * 
+	 * @param queryID
+	 * @param results
+	 * @return
+	 */
+	public boolean read(String queryID, ResultBuffer results) {
+		
+		Integer i = queries.get(queryID);
+		if (i == null) {
+			return false;
+		}
+		
+		results.clear(null);
+		results.setDocIDs(dictionary);
+		results.size = Math.min(sizes[i], results.docs.length);
+		results.totalHits = totalHits[i];
+		results.truncated = truncated[i];
+		for (int k = 0; k < results.size; k++) {
+			results.docs[k] = docs.get(firstRows[i] + k);
+			results.scores[k] = scores.get(firstRows[i] + k);
+		}
+		return true;
+		
+	}
+	
+	/**
+	 * Feeds every query of the run, in run order, to the consumer.
+	 * 
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public void replay(ResultConsumer consumer) throws IOException {
+		
+		ResultBuffer results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+		for (String queryID : queryIDs) {
+			read(queryID, results);
+			consumer.consume(queryID, results);
+		}
+		
+	}
+	
+	/**
+	 * Skips exactly n bytes.
+	 * 
+	 * @param inputStream
+	 * @param n
+	 * @throws IOException
+	 */
+	private static void skipFully(DataInputStream inputStream, long n) throws IOException {
+		
+		while (n > 0) {
+			long skipped = inputStream.skip(n);
+			if (skipped <= 0) {
+				throw new IOException("Unexpected end of the run");
+			}
+			n -= skipped;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,232 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a run in the binary columnar format, read back by BinaryRunReader:
+ * 	- Header: magic, version, number of queries, number of rows, dictionary size,
+ * 	  and the offsets of the sections below
+ * 	- Docs column: one int per row (a docID dictionary number), queries one after the other, by rank
+ * 	- Scores column: one float per row (NaN if the scores are unknown, e.g. converted from text)
+ * 	- Query directory: for every query, its ID, first row, number of rows, total hits and truncated flag
+ * 	- DocID dictionary: the external docIDs, by dictionary number
+ * 
+ * The columns are streamed to disk as the queries come (the scores through a side file),
+ * only the directory and the dictionary are kept in memory.
+ * 
+ * @author amir
+ * 
+ */
+public class BinaryRunWriter implements ResultConsumer {
+
+	static final int MAGIC = 0x4C52554E; 		// "LRUN"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 8 * 4;
+	
+	private String file; 						// The run file
+	private File scoresFile; 					// Side file for the scores column
+	private DataOutputStream docsStream; 		// Docs column (the run file, after the header)
+	private DataOutputStream scoresStream; 		// Scores column
+	private ByteArrayOutputStream directoryBytes; 	// Query directory
+	private DataOutputStream directoryStream;
+	private Map<String,Integer> dictionary; 	// docID -> dictionary number
+	private List<String> docIDs; 				// dictionary number -> docID
+	private int[] numericKeys; 					// Numeric docID -> dictionary number (open addressing),
+	private int[] numericNumbers; 				// so numeric results are looked up with no String per row
+	private int numericCount; 					// Number of numeric docIDs in the table
+	private int queryCount; 					// Number of queries written
+	private long rowCount; 						// Number of rows written
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public BinaryRunWriter(String file) throws IOException {
+		
+		this.file = file;
+		scoresFile = new File(file + ".scores");
+		
+		// The header is written last, leave room for it
+		docsStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		docsStream.write(new byte[HEADER_SIZE]);
+		scoresStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(scoresFile)));
+		
+		directoryBytes = new ByteArrayOutputStream();
+		directoryStream = new DataOutputStream(directoryBytes);
+		dictionary = new HashMap<String,Integer>();
+		docIDs = new ArrayList<String>();
+		numericKeys = new int[1024];
+		numericNumbers = new int[1024];
+		Arrays.fill(numericNumbers, -1);
+		
+	}
+	
+	/**
+	 * Appends the query's results.
+	 * 
+	 */
+	public void consume(String queryID, ResultBuffer results) throws IOException {
+		
+		// Directory entry
+		directoryStream.writeUTF(queryID);
+		directoryStream.writeLong(rowCount);
+		directoryStream.writeInt(results.size());
+		directoryStream.writeInt(results.getTotalHits());
+		directoryStream.writeBoolean(results.isTruncated());
+		queryCount++;
+		
+		// Rows
+		for (int i = 0; i < results.size(); i++) {
+			
+			int number = results.hasNumericDocIDs() ? number(results.getNumericDocID(i)) : number(results.getDocID(i));
+			docsStream.writeInt(number);
+			scoresStream.writeFloat(results.getScore(i));
+			
+		}
+		rowCount += results.size();
+		
+	}
+	
+	/**
+	 * Returns the dictionary number of the docID, adding it if new.
+	 * 
+	 * @param docID
+	 * @return
+	 */
+	private int number(String docID) {
+		
+		Integer number = dictionary.get(docID);
+		if (number == null) {
+			number = docIDs.size();
+			dictionary.put(docID, number);
+			docIDs.add(docID);
+		}
+		return number;
+		
+	}
+	
+	/**
+	 * Returns the dictionary number of the numeric docID, adding it if new.
+	 * Only a new docID is turned into a String (for the dictionary).
+	 * 
+	 * @param docID
+	 * @return
+	 */
+	private int number(int docID) {
+		
+		int mask = numericKeys.length - 1;
+		int slot = slot(docID, mask);
+		while (numericNumbers[slot] != -1) {
+			if (numericKeys[slot] == docID) {
+				return numericNumbers[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		int number = number(Integer.toString(docID));
+		numericKeys[slot] = docID;
+		numericNumbers[slot] = number;
+		
+		// Keep the table at most half full
+		if (++numericCount * 2 > numericKeys.length) {
+			int[] keys = numericKeys;
+			int[] numbers = numericNumbers;
+			numericKeys = new int[keys.length * 2];
+			numericNumbers = new int[keys.length * 2];
+			Arrays.fill(numericNumbers, -1);
+			mask = numericKeys.length - 1;
+			for (int i = 0; i < keys.length; i++) {
+				if (numbers[i] != -1) {
+					slot = slot(keys[i], mask);
+					while (numericNumbers[slot] != -1) {
+						slot = (slot + 1) & mask;
+					}
+					numericKeys[slot] = keys[i];
+					numericNumbers[slot] = numbers[i];
+				}
+			}
+		}
+		
+		return number;
+		
+	}
+	
+	/**
+	 * Returns the first table slot of the numeric docID.
+	 * 
+	 */
+	private static int slot(int docID, int mask) {
+		int hash = docID * 0x9E3779B9;
+		return (hash ^ hash >>> 16) & mask;
+	}
+	
+	/**
+	 * Completes the file: appends the scores column, the directory and the dictionary,
+	 * and writes the header.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		
+		long scoresOffset = HEADER_SIZE + rowCount * 4;
+		long directoryOffset = scoresOffset + rowCount * 4;
+		
+		// Scores column
+		scoresStream.close();
+		InputStream scoresInput = new FileInputStream(scoresFile);
+		try {
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = scoresInput.read(buffer)) != -1) {
+				docsStream.write(buffer, 0, read);
+			}
+		} finally {
+			scoresInput.close();
+			scoresFile.delete();
+		}
+		
+		// Directory
+		directoryStream.flush();
+		directoryBytes.writeTo(docsStream);
+		
+		// Dictionary
+		long dictionaryOffset = directoryOffset + directoryBytes.size();
+		for (String docID : docIDs) {
+			docsStream.writeUTF(docID);
+		}
+		docsStream.close();
+		
+		// Header
+		RandomAccessFile header = new RandomAccessFile(file, "rw");
+		try {
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(queryCount);
+			header.writeLong(rowCount);
+			header.writeInt(docIDs.size());
+			header.writeLong(HEADER_SIZE);
+			header.writeLong(scoresOffset);
+			header.writeLong(directoryOffset);
+			header.writeLong(dictionaryOffset);
+		} finally {
+			header.close();
+		}
+		
+	}
+	
+}
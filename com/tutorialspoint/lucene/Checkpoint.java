@@ -0,0 +1,203 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The progress of a query run, saved every few queries so a restarted run can resume:
+ * 	- The index it runs against (the configuration, the top 20 terms and the number of documents),
+ * 	  so the index doesn't have to be built again
+ * 	- The last completed query (ID and count)
+ * 	- The length of the output file when the checkpoint was taken (anything after it is discarded)
+ * 	- The benchmark accumulators
+ * 
+ * The file is replaced atomically (written aside and synced, then moved over the previous one
+ * in a single rename), so a crash during a save leaves the previous checkpoint intact.
+ * 
+ * @author amir
+ * 
+ */
+public class Checkpoint {
+
+	private static final int VERSION = 1;
+	
+	private String indexConfig; 		// Describes the index (must match to resume)
+	private Set<String> top20Terms; 	// Stop list of the analyzer
+	private int numIndexed; 			// Number of indexed documents
+	private String lastQueryID; 		// The last completed query
+	private int queriesCompleted; 		// Number of completed queries, in query file order
+	private long outputOffset; 			// Length of the output file, flushed
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param indexConfig
+	 * @param top20Terms
+	 * @param numIndexed
+	 */
+	public Checkpoint(String indexConfig, Set<String> top20Terms, int numIndexed) {
+		
+		this.indexConfig = indexConfig;
+		this.top20Terms = top20Terms;
+		this.numIndexed = numIndexed;
+		
+	}
+	
+	/**
+	 * Records the progress.
+	 * 
+	 * @param lastQueryID
+	 * @param queriesCompleted
+	 * @param outputOffset
+	 */
+	public void setProgress(String lastQueryID, int queriesCompleted, long outputOffset) {
+		
+		this.lastQueryID = lastQueryID;
+		this.queriesCompleted = queriesCompleted;
+		this.outputOffset = outputOffset;
+		
+	}
+	
+	/**
+	 * Saves the checkpoint, with the benchmark accumulators (if any).
+	 * 
+	 * @param file
+	 * @param benchmark
+	 * @throws IOException
+	 */
+	public void save(String file, Benchmark benchmark) throws IOException {
+		
+		File target = new File(file);
+		File temp = new File(file + ".tmp");
+		FileOutputStream fileStream = null;
+		DataOutputStream outputStream = null;
+		
+		try {
+			
+			fileStream = new FileOutputStream(temp);
+			outputStream = new DataOutputStream(new BufferedOutputStream(fileStream));
+			
+			outputStream.writeInt(VERSION);
+			outputStream.writeUTF(indexConfig);
+			outputStream.writeInt(top20Terms.size());
+			for (String term : top20Terms) {
+				outputStream.writeUTF(term);
+			}
+			outputStream.writeInt(numIndexed);
+			outputStream.writeUTF(lastQueryID == null ? "" : lastQueryID);
+			outputStream.writeInt(queriesCompleted);
+			outputStream.writeLong(outputOffset);
+			
+			outputStream.writeBoolean(benchmark != null);
+			if (benchmark != null) {
+				benchmark.save(outputStream);
+			}
+			
+			// On disk before it replaces the previous checkpoint
+			outputStream.flush();
+			fileStream.getFD().sync();
+			
+		} finally {
+			if (outputStream != null) {
+				outputStream.close();
+			} else if (fileStream != null) {
+				fileStream.close();
+			}
+		}
+		
+		// Replace the previous checkpoint
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+	}
+	
+	/**
+	 * Loads a checkpoint, restoring the benchmark accumulators (if any).
+	 * Returns null if there's no checkpoint.
+	 * 
+	 * @param file
+	 * @param benchmark
+	 * @return
+	 * @throws IOException
+	 */
+	public static Checkpoint load(String file, Benchmark benchmark) throws IOException {
+		
+		if (!new File(file).exists()) {
+			return null;
+		}
+		
+		DataInputStream inputStream = null;
+		
+		try {
+			
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			
+			if (inputStream.readInt() != VERSION) {
+				throw new IOException("Unknown checkpoint version in '" + file + "'");
+			}
+			String indexConfig = inputStream.readUTF();
+			int count = inputStream.readInt();
+			Set<String> top20Terms = new HashSet<String>();
+			for (int i = 0; i < count; i++) {
+				top20Terms.add(inputStream.readUTF());
+			}
+			Checkpoint checkpoint = new Checkpoint(indexConfig, top20Terms, inputStream.readInt());
+			checkpoint.setProgress(inputStream.readUTF(), inputStream.readInt(), inputStream.readLong());
+			
+			if (inputStream.readBoolean() && benchmark != null) {
+				benchmark.load(inputStream);
+			}
+			
+			return checkpoint;
+			
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Deletes the checkpoint (once the run is complete).
+	 * 
+	 * @param file
+	 */
+	public static void delete(String file) {
+		new File(file).delete();
+	}
+	
+	public String getIndexConfig() {
+		return indexConfig;
+	}
+	
+	public Set<String> getTop20Terms() {
+		return top20Terms;
+	}
+	
+	public int getNumIndexed() {
+		return numIndexed;
+	}
+	
+	public String getLastQueryID() {
+		return lastQueryID;
+	}
+	
+	public int getQueriesCompleted() {
+		return queriesCompleted;
+	}
+	
+	public long getOutputOffset() {
+		return outputOffset;
+	}
+	
+}
@@ -0,0 +1,429 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic collections for scale testing, from the statistics of an existing one:
+ * 	- Zipf vocabulary: the source terms by frequency rank, with the exponent fitted on the source,
+ * 	  and extra synthetic terms so the vocabulary grows with the collection (Heaps' law, beta = 0.5)
+ * 	- Document lengths: title and body lengths (split at the first dot) sampled from the source documents
+ * 	- Query lengths and relevant documents per query: sampled from the source queries and truth
+ * 
+ * Writes .I/.W docs and queries files and a truth file (plus a parameterFile) for every scale.
+ * Everything is deterministic for a given seed, and streamed to disk: every document is generated
+ * from its own random seed, so the documents a query is built from can be regenerated on demand,
+ * without holding the corpus in memory.
+ * 
+ * Usage: CollectionGenerator <docsFile> <queryFile> <truthFile> <outputDir> [seed] [scales, e.g. 10,100,1000]
+ * 
+ * @author amir
+ * 
+ */
+public class CollectionGenerator {
+
+	private static final int LINE_LENGTH = 80; 			// Wrap the generated text at about 80 characters
+	private static final double QUERY_NOISE = 0.3; 		// Fraction of query terms drawn from the whole vocabulary
+
+	private String[] sourceTerms; 						// Source vocabulary, by descending frequency
+	private double zipfExponent; 						// Fitted Zipf exponent
+	private int[] titleLengths; 						// Title length (in terms) of every source document
+	private int[] bodyLengths; 							// Body length (in terms) of every source document
+	private int[] queryLengths; 						// Length (in terms) of every source query
+	private int[] relevantCounts; 						// Number of relevant documents of every judged source query
+	private long seed; 									// Random seed
+
+	private double[] cumulative; 						// Zipf CDF over the current vocabulary
+	private int vocabularySize; 						// Current vocabulary size
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param seed
+	 */
+	public CollectionGenerator(long seed) {
+
+		this.seed = seed;
+
+	}
+
+	/**
+	 * Reads the source collection's statistics.
+	 * 
+	 * @param docsFile
+	 * @param queryFile
+	 * @param truthFile
+	 * @throws IOException
+	 */
+	public void readStatistics(String docsFile, String queryFile, String truthFile) throws IOException {
+
+		System.out.println("Reading the source statistics...");
+
+		// Term frequencies and document lengths (the source collection is small enough to load)
+		final Map<String,Integer> frequencies = new HashMap<String,Integer>();
+		List<Integer> titles = new ArrayList<Integer>();
+		List<Integer> bodies = new ArrayList<Integer>();
+		for (QueryRecord doc : QueryRecord.load(docsFile)) {
+			int firstDot = doc.text.indexOf('.');
+			String title = firstDot < 0 ? "" : doc.text.substring(0, firstDot);
+			String body = doc.text.substring(firstDot + 1);
+			titles.add(countTerms(title, frequencies));
+			bodies.add(countTerms(body, frequencies));
+		}
+		titleLengths = toArray(titles);
+		bodyLengths = toArray(bodies);
+
+		// Sort the vocabulary by frequency
+		sourceTerms = frequencies.keySet().toArray(new String[frequencies.size()]);
+		Arrays.sort(sourceTerms, new java.util.Comparator<String>() {
+			public int compare(String a, String b) {
+				int diff = frequencies.get(b) - frequencies.get(a);
+				return diff != 0 ? diff : a.compareTo(b);
+			}
+		});
+
+		// Fit the Zipf exponent: least squares of log(frequency) over log(rank)
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		int n = 0;
+		for (int rank = 1; rank <= sourceTerms.length; rank++) {
+			int frequency = frequencies.get(sourceTerms[rank - 1]);
+			if (frequency < 2) {
+				break;
+			}
+			double x = Math.log(rank), y = Math.log(frequency);
+			sumX += x; sumY += y; sumXX += x * x; sumXY += x * y;
+			n++;
+		}
+		zipfExponent = n < 2 ? 1.0 : -(n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+
+		// Query lengths
+		List<Integer> lengths = new ArrayList<Integer>();
+		for (QueryRecord query : QueryRecord.load(queryFile)) {
+			lengths.add(Math.max(1, countTerms(query.text, null)));
+		}
+		queryLengths = toArray(lengths);
+
+		// Relevant documents per query
+		Map<String,Integer> relevant = new HashMap<String,Integer>();
+		BufferedReader inputStream = null;
+		try {
+			inputStream = new BufferedReader(new FileReader(truthFile));
+			String line;
+			while ((line = inputStream.readLine()) != null) {
+				String[] parts = line.split("\\s");
+				if (parts.length >= 3) {
+					Integer count = relevant.get(parts[0]);
+					relevant.put(parts[0], count == null ? 1 : count + 1);
+				}
+			}
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+		relevantCounts = toArray(new ArrayList<Integer>(relevant.values()));
+		if (relevantCounts.length == 0) {
+			relevantCounts = new int[] {1};
+		}
+
+		System.out.printf("%d documents, %d terms (Zipf exponent %.3f), %d queries, %d judged\n",
+				titleLengths.length, sourceTerms.length, zipfExponent, queryLengths.length, relevant.size());
+
+	}
+
+	/**
+	 * Generates a collection at the given scale (in number of source documents and queries).
+	 * 
+	 * @param outputDir
+	 * @param scale
+	 * @throws IOException
+	 */
+	public void generate(String outputDir, int scale) throws IOException {
+
+		int numDocs = titleLengths.length * scale;
+		int numQueries = queryLengths.length * scale;
+
+		// The vocabulary grows with the square root of the collection size
+		vocabularySize = (int) Math.min(Integer.MAX_VALUE - 8, (long) (sourceTerms.length * Math.sqrt(scale)));
+		buildDistribution();
+
+		String suffix = "_x" + scale + ".txt";
+		File docsFile = new File(outputDir, "docs" + suffix);
+		File queryFile = new File(outputDir, "queries" + suffix);
+		File truthFile = new File(outputDir, "truth" + suffix);
+
+		System.out.println("Generating x" + scale + ": " + numDocs + " documents, " + numQueries + " queries...");
+
+		// Documents
+		Writer docsStream = new BufferedWriter(new FileWriter(docsFile), 1 << 16);
+		try {
+			int[] terms = new int[0];
+			for (int doc = 1; doc <= numDocs; doc++) {
+				Random random = docRandom(doc);
+				int source = random.nextInt(titleLengths.length);
+				int titleLength = Math.max(1, titleLengths[source]);
+				int length = titleLength + bodyLengths[source];
+				if (terms.length < length) {
+					terms = new int[length];
+				}
+				for (int i = 0; i < length; i++) {
+					terms[i] = sampleTerm(random);
+				}
+				writeRecord(docsStream, doc, terms, length, titleLength);
+			}
+		} finally {
+			docsStream.close();
+		}
+
+		// Queries and truth
+		Writer queryStream = new BufferedWriter(new FileWriter(queryFile), 1 << 16);
+		Writer truthStream = new BufferedWriter(new FileWriter(truthFile), 1 << 16);
+		try {
+			for (int query = 1; query <= numQueries; query++) {
+
+				Random random = new Random(mix(seed, -query));
+				int length = queryLengths[random.nextInt(queryLengths.length)];
+				int numRelevant = Math.min(numDocs, Math.max(1, relevantCounts[random.nextInt(relevantCounts.length)]));
+
+				// Pick the relevant documents, and regenerate them to draw the query terms from
+				int[] relevant = new int[numRelevant];
+				for (int i = 0; i < numRelevant; i++) {
+					relevant[i] = 1 + random.nextInt(numDocs);
+					truthStream.write(query + " 0 " + relevant[i] + " 1\n");
+				}
+				int[] terms = new int[length];
+				for (int i = 0; i < length; i++) {
+					if (random.nextDouble() < QUERY_NOISE) {
+						terms[i] = sampleTerm(random);
+					} else {
+						terms[i] = regenerateTerm(relevant[random.nextInt(numRelevant)], random);
+					}
+				}
+				writeRecord(queryStream, query, terms, length, 0);
+
+			}
+		} finally {
+			queryStream.close();
+			truthStream.close();
+		}
+
+		// A parameterFile for the generated collection
+		Writer parameterStream = new FileWriter(new File(outputDir, "parameterFile" + suffix));
+		try {
+			parameterStream.write("queryFile=" + queryFile.getPath() + "\n");
+			parameterStream.write("docsFile=" + docsFile.getPath() + "\n");
+			parameterStream.write("outputFile=" + new File(outputDir, "output" + suffix).getPath() + "\n");
+			parameterStream.write("retrievalAlgorithm=basic\n");
+			parameterStream.write("truthFile=" + truthFile.getPath() + "\n");
+		} finally {
+			parameterStream.close();
+		}
+
+	}
+
+	/**
+	 * Regenerates a random term of the given document (without regenerating the whole corpus).
+	 * 
+	 * @param doc
+	 * @param random
+	 * @return
+	 */
+	private int regenerateTerm(int doc, Random random) {
+
+		// Replay the document's generator up to a random position
+		Random docRandom = docRandom(doc);
+		int source = docRandom.nextInt(titleLengths.length);
+		int length = Math.max(1, titleLengths[source]) + bodyLengths[source];
+		int position = random.nextInt(length);
+		int term = 0;
+		for (int i = 0; i <= position; i++) {
+			term = sampleTerm(docRandom);
+		}
+		return term;
+
+	}
+
+	/**
+	 * Returns the random generator of a single document.
+	 * 
+	 * @param doc
+	 * @return
+	 */
+	private Random docRandom(int doc) {
+		return new Random(mix(seed, doc));
+	}
+
+	/**
+	 * Mixes the seed with a record number (SplitMix64 finalizer), for independent per-record seeds.
+	 * 
+	 * @param seed
+	 * @param n
+	 * @return
+	 */
+	static long mix(long seed, long n) {
+
+		long z = seed + n * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+
+	}
+
+	/**
+	 * Builds the Zipf CDF over the current vocabulary.
+	 * 
+	 */
+	private void buildDistribution() {
+
+		cumulative = new double[vocabularySize];
+		double sum = 0;
+		for (int rank = 1; rank <= vocabularySize; rank++) {
+			sum += 1 / Math.pow(rank, zipfExponent);
+			cumulative[rank - 1] = sum;
+		}
+		for (int i = 0; i < vocabularySize; i++) {
+			cumulative[i] /= sum;
+		}
+
+	}
+
+	/**
+	 * Samples a term rank (0 based) from the Zipf distribution.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	private int sampleTerm(Random random) {
+
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(vocabularySize - 1, index < 0 ? -index - 1 : index);
+
+	}
+
+	/**
+	 * Returns the text of a term rank: a source term, or a synthetic one beyond the source vocabulary.
+	 * 
+	 * @param rank
+	 * @return
+	 */
+	private String termText(int rank) {
+		return rank < sourceTerms.length ? sourceTerms[rank] : "x" + Integer.toString(rank, 36);
+	}
+
+	/**
+	 * Writes a single .I/.W record. If titleLength > 0, a dot follows the title.
+	 * 
+	 * @param outputStream
+	 * @param id
+	 * @param terms
+	 * @param length
+	 * @param titleLength
+	 * @throws IOException
+	 */
+	private void writeRecord(Writer outputStream, int id, int[] terms, int length, int titleLength) throws IOException {
+
+		outputStream.write(".I " + id + "\n.W\n");
+		int column = 0;
+		for (int i = 0; i < length; i++) {
+			String text = termText(terms[i]);
+			if (column > 0 && column + text.length() > LINE_LENGTH) {
+				outputStream.write('\n');
+				column = 0;
+			} else if (column > 0) {
+				outputStream.write(' ');
+				column++;
+			}
+			outputStream.write(text);
+			column += text.length();
+			if (i == titleLength - 1) {
+				outputStream.write('.');
+				column++;
+			}
+		}
+		outputStream.write('\n');
+
+	}
+
+	/**
+	 * Counts the terms of the text (letters and digits, lowercased),
+	 * adding them to the frequency dictionary if one is given.
+	 * 
+	 * @param text
+	 * @param frequencies
+	 * @return
+	 */
+	private static int countTerms(String text, Map<String,Integer> frequencies) {
+
+		int count = 0;
+		for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+			if (token.length() == 0) {
+				continue;
+			}
+			count++;
+			if (frequencies != null) {
+				Integer frequency = frequencies.get(token);
+				frequencies.put(token, frequency == null ? 1 : frequency + 1);
+			}
+		}
+		return count;
+
+	}
+
+	/**
+	 * Converts a list of integers to an array.
+	 * 
+	 * @param list
+	 * @return
+	 */
+	private static int[] toArray(List<Integer> list) {
+
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+
+	}
+
+	/**
+	 * Runs the generator.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		if (args.length < 4) {
+			System.out.println("Usage: CollectionGenerator <docsFile> <queryFile> <truthFile> <outputDir> [seed] [scales, e.g. 10,100,1000]");
+			return;
+		}
+
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+		String scales = args.length > 5 ? args[5] : "10,100,1000";
+
+		try {
+
+			CollectionGenerator generator = new CollectionGenerator(seed);
+			generator.readStatistics(args[0], args[1], args[2]);
+			new File(args[3]).mkdirs();
+			for (String scale : scales.split(",")) {
+				generator.generate(args[3], Integer.parseInt(scale.trim()));
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+
+/**
+ * Wraps the indexing analyzer and counts, per field, the tokens indexed and the field instances,
+ * so the index can record its totals at commit time (which Lucene 3.6 doesn't keep).
+ * The totals are stored in the commit user data, under "tokens.<field>" and "docs.<field>".
+ * 
+ * @author amir
+ * 
+ */
+public final class CountingAnalyzer extends Analyzer {
+
+	private Analyzer analyzer; 				// The wrapped analyzer
+	private Map<String,long[]> counts; 		// Dictionary of field -> {tokens, instances} (single indexing thread)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param analyzer
+	 */
+	public CountingAnalyzer(Analyzer analyzer) {
+		
+		this.analyzer = analyzer;
+		counts = new HashMap<String,long[]>();
+		
+	}
+	
+	public TokenStream tokenStream(String fieldName, Reader reader) {
+		
+		return new CountingFilter(analyzer.tokenStream(fieldName, reader), count(fieldName));
+		
+	}
+	
+	public TokenStream reusableTokenStream(String fieldName, Reader reader) throws IOException {
+		
+		return new CountingFilter(analyzer.reusableTokenStream(fieldName, reader), count(fieldName));
+		
+	}
+	
+	public int getPositionIncrementGap(String fieldName) {
+		return analyzer.getPositionIncrementGap(fieldName);
+	}
+	
+	/**
+	 * Returns the counters of the field, counting one more instance.
+	 * 
+	 * @param fieldName
+	 * @return
+	 */
+	private long[] count(String fieldName) {
+		
+		long[] count = counts.get(fieldName);
+		if (count == null) {
+			count = new long[2];
+			counts.put(fieldName, count);
+		}
+		count[1]++;
+		return count;
+		
+	}
+	
+	/**
+	 * Returns the totals, as commit user data.
+	 * 
+	 * @return
+	 */
+	public Map<String,String> getCommitData() {
+		
+		Map<String,String> data = new HashMap<String,String>();
+		for (Map.Entry<String,long[]> entry : counts.entrySet()) {
+			data.put("tokens." + entry.getKey(), Long.toString(entry.getValue()[0]));
+			data.put("docs." + entry.getKey(), Long.toString(entry.getValue()[1]));
+		}
+		return data;
+		
+	}
+	
+	/**
+	 * Counts the tokens of a field instance.
+	 */
+	private static final class CountingFilter extends TokenFilter {
+		
+		private long[] count; 		// The field's counters
+		
+		CountingFilter(TokenStream input, long[] count) {
+			super(input);
+			this.count = count;
+		}
+		
+		@Override
+		public boolean incrementToken() throws IOException {
+			
+			if (!input.incrementToken()) {
+				return false;
+			}
+			count[0]++;
+			return true;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,184 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockFactory;
+
+/**
+ * Wraps a directory and counts the bytes written to it, including files that are later
+ * merged away or deleted (flushed segments, merges, compound files, commits).
+ * Every output counts its own bytes, and adds them to the total once, when closed
+ * (so the writes don't contend on the total; files still open aren't counted yet).
+ * 
+ * @author amir
+ * 
+ */
+public class CountingDirectory extends Directory {
+
+	private Directory directory; 		// The wrapped directory
+	private AtomicLong bytesWritten; 	// Written by the indexing and the merge threads, to closed outputs
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param directory
+	 */
+	public CountingDirectory(Directory directory) {
+		
+		this.directory = directory;
+		bytesWritten = new AtomicLong();
+		
+	}
+	
+	/**
+	 * Returns the total number of bytes written.
+	 * 
+	 * @return
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+	
+	@Override
+	public IndexOutput createOutput(String name) throws IOException {
+		
+		final IndexOutput output = directory.createOutput(name);
+		return new IndexOutput() {
+			
+			private long written; 		// Bytes written to this output (only by its own thread)
+			private boolean isClosed;
+			
+			@Override
+			public void writeByte(byte b) throws IOException {
+				output.writeByte(b);
+				written++;
+			}
+			
+			@Override
+			public void writeBytes(byte[] b, int offset, int length) throws IOException {
+				output.writeBytes(b, offset, length);
+				written += length;
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				output.flush();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				output.close();
+				if (!isClosed) {
+					isClosed = true;
+					bytesWritten.addAndGet(written);
+				}
+			}
+			
+			@Override
+			public long getFilePointer() {
+				return output.getFilePointer();
+			}
+			
+			@Override
+			public void seek(long pos) throws IOException {
+				output.seek(pos);
+			}
+			
+			@Override
+			public long length() throws IOException {
+				return output.length();
+			}
+			
+			@Override
+			public void setLength(long length) throws IOException {
+				output.setLength(length);
+			}
+			
+		};
+		
+	}
+	
+	@Override
+	public String[] listAll() throws IOException {
+		return directory.listAll();
+	}
+	
+	@Override
+	public boolean fileExists(String name) throws IOException {
+		return directory.fileExists(name);
+	}
+	
+	@Override
+	@Deprecated
+	public long fileModified(String name) throws IOException {
+		return directory.fileModified(name);
+	}
+	
+	@Override
+	@Deprecated
+	public void touchFile(String name) throws IOException {
+		directory.touchFile(name);
+	}
+	
+	@Override
+	public void deleteFile(String name) throws IOException {
+		directory.deleteFile(name);
+	}
+	
+	@Override
+	public long fileLength(String name) throws IOException {
+		return directory.fileLength(name);
+	}
+	
+	@Override
+	public void sync(Collection<String> names) throws IOException {
+		directory.sync(names);
+	}
+	
+	@Override
+	public IndexInput openInput(String name) throws IOException {
+		return directory.openInput(name);
+	}
+	
+	@Override
+	public IndexInput openInput(String name, int bufferSize) throws IOException {
+		return directory.openInput(name, bufferSize);
+	}
+	
+	@Override
+	public Lock makeLock(String name) {
+		return directory.makeLock(name);
+	}
+	
+	@Override
+	public void clearLock(String name) throws IOException {
+		directory.clearLock(name);
+	}
+	
+	@Override
+	public void setLockFactory(LockFactory lockFactory) throws IOException {
+		directory.setLockFactory(lockFactory);
+	}
+	
+	@Override
+	public LockFactory getLockFactory() {
+		return directory.getLockFactory();
+	}
+	
+	@Override
+	public String getLockID() {
+		return directory.getLockID();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		directory.close();
+	}
+	
+}
@@ -0,0 +1,211 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+
+/**
+ * Maps the internal doc numbers to the numeric external docIDs, as a dense int array,
+ * instead of the String field cache (4 bytes per document, and no String comparisons downstream).
+ * 
+ * It's built from the final index (merges may reorder the documents), and saved in the index directory,
+ * delta coded: every docID is written as the zig-zag VInt of its difference with the previous one,
+ * so a collection indexed in docID order takes about a byte per document.
+ * 
+ * Only for collections whose docIDs are all (non-negative) ints in canonical form ("7", not "007"),
+ * the others keep the String docIDs: an int can only be printed back one way.
+ * 
+ * @author amir
+ * 
+ */
+public class DocIDMap {
+
+	// The maps loaded so far, by reader (like the field cache: shared by all the searchers of a reader)
+	private static final Map<Object,DocIDMap> LOADED = new WeakHashMap<Object,DocIDMap>();
+	private static final DocIDMap NONE = new DocIDMap(null);
+	
+	private int[] ids; 		// Internal doc number -> external docID (-1 for deleted documents)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param ids
+	 */
+	public DocIDMap(int[] ids) {
+		
+		this.ids = ids;
+		
+	}
+	
+	/**
+	 * Builds the map from the docID field of the index, or returns null if a docID isn't numeric.
+	 * The docID field has a single posting per term, so this is a pass over its term dictionary.
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public static DocIDMap build(IndexReader reader) throws IOException {
+		
+		int[] ids = new int[reader.maxDoc()];
+		Arrays.fill(ids, -1);
+		
+		TermEnum terms = reader.terms(new Term(LuceneConstants.DOCID, ""));
+		TermDocs termDocs = reader.termDocs();
+		try {
+			
+			do {
+				
+				Term term = terms.term();
+				if (term == null || !term.field().equals(LuceneConstants.DOCID)) {
+					break;
+				}
+				
+				int id = parse(term.text());
+				if (id < 0) {
+					return null;
+				}
+				termDocs.seek(terms);
+				while (termDocs.next()) {
+					ids[termDocs.doc()] = id;
+				}
+				
+			} while (terms.next());
+			
+		} finally {
+			termDocs.close();
+			terms.close();
+		}
+		
+		return new DocIDMap(ids);
+		
+	}
+	
+	/**
+	 * Parses a docID, returns -1 if it isn't a non-negative int,
+	 * or if it doesn't print back the same (leading zeros).
+	 * 
+	 * @param docID
+	 * @return
+	 */
+	static int parse(String docID) {
+		
+		if (docID.length() == 0 || docID.length() > 9) {
+			return -1;
+		}
+		int id = 0;
+		for (int i = 0; i < docID.length(); i++) {
+			char c = docID.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			id = id * 10 + (c - '0');
+		}
+		return Integer.toString(id).equals(docID) ? id : -1;
+		
+	}
+	
+	/**
+	 * Returns the docIDs, by internal doc number.
+	 * 
+	 * @return
+	 */
+	public int[] getIDs() {
+		return ids;
+	}
+	
+	/**
+	 * Saves the map in the index directory, and returns its size in bytes.
+	 * 
+	 * @param directory
+	 * @return
+	 * @throws IOException
+	 */
+	public long save(Directory directory) throws IOException {
+		
+		IndexOutput output = directory.createOutput(LuceneConstants.DOCID_MAP_FILE);
+		try {
+			
+			// Format: <count> followed by the zig-zag coded deltas
+			output.writeVInt(ids.length);
+			int previous = 0;
+			for (int id : ids) {
+				int delta = id - previous;
+				output.writeVInt((delta << 1) ^ (delta >> 31));
+				previous = id;
+			}
+			return output.getFilePointer();
+			
+		} finally {
+			output.close();
+		}
+		
+	}
+	
+	/**
+	 * Returns the map of the reader's index, loading it on the first call for that reader,
+	 * or null if the index has none (or has one left from another build).
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public static DocIDMap get(IndexReader reader) throws IOException {
+		
+		synchronized (LOADED) {
+			
+			DocIDMap map = LOADED.get(reader.getCoreCacheKey());
+			if (map == null) {
+				map = load(reader.directory());
+				if (map == null || map.ids.length != reader.maxDoc()) {
+					map = NONE;
+				}
+				LOADED.put(reader.getCoreCacheKey(), map);
+			}
+			return map == NONE ? null : map;
+			
+		}
+		
+	}
+	
+	/**
+	 * Loads the map from the index directory, or returns null if the index has none.
+	 * 
+	 * @param directory
+	 * @return
+	 * @throws IOException
+	 */
+	public static DocIDMap load(Directory directory) throws IOException {
+		
+		if (!directory.fileExists(LuceneConstants.DOCID_MAP_FILE)) {
+			return null;
+		}
+		
+		IndexInput input = directory.openInput(LuceneConstants.DOCID_MAP_FILE);
+		try {
+			
+			int[] ids = new int[input.readVInt()];
+			int previous = 0;
+			for (int i = 0; i < ids.length; i++) {
+				int zigzag = input.readVInt();
+				previous += (zigzag >>> 1) ^ -(zigzag & 1);
+				ids[i] = previous;
+			}
+			return new DocIDMap(ids);
+			
+		} finally {
+			input.close();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,148 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/**
+ * A reusable document for the indexing loop: the Document and its Fields are created once,
+ * and every record only sets their values (Lucene consumes the values in addDocument(),
+ * so they can change for the next one). The title and the repeated titles are kept
+ * in reusable buffers, so a record allocates nothing but its docID and what the analyzer needs.
+ * 
+ * Fields aren't thread-safe: every indexing thread needs its own template.
+ * 
+ * @author amir
+ * 
+ */
+public class DocumentTemplate {
+
+	/**
+	 * A Reader over a CharSequence that can be pointed at another one.
+	 */
+	private static class ReusableReader extends Reader {
+		
+		private CharSequence text; 	// The text being read
+		private int position; 		// Next char
+		
+		void reset(CharSequence text) {
+			this.text = text;
+			position = 0;
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (position == text.length()) {
+				return -1;
+			}
+			int n = Math.min(len, text.length() - position);
+			for (int i = 0; i < n; i++) {
+				cbuf[off + i] = text.charAt(position++);
+			}
+			return n;
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+	}
+	
+	private boolean isBasic; 				// Basic/Advanced layout
+	private int titleWeight; 				// Title copies in the catch-all field (0 = separate title/body fields)
+	private Document document; 				// The reused document
+	private Field textField; 				// 'contents', 'all' or 'body'
+	private Field titleField; 				// 'title' (split layout only)
+	private Field docIDField; 				// 'docID'
+	private ReusableReader titleReader; 	// Reads the title (split layout)
+	private StringBuilder titles; 			// The repeated titles (combined layout)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param isBasic
+	 * @param titleWeight
+	 * @param termVector
+	 */
+	public DocumentTemplate(boolean isBasic, int titleWeight, Field.TermVector termVector) {
+		
+		this.isBasic = isBasic;
+		this.titleWeight = titleWeight;
+		document = new Document();
+		
+		// The readers are placeholders until the first record
+		titleReader = new ReusableReader();
+		titleReader.reset("");
+		if (isBasic) {
+			
+			textField = new Field(LuceneConstants.CONTENTS, titleReader, termVector);
+			document.add(textField);
+			
+		} else if (titleWeight > 0) {
+			
+			titles = new StringBuilder();
+			textField = new Field(LuceneConstants.ALL, titleReader, termVector);
+			document.add(textField);
+			
+		} else {
+			
+			titleField = new Field(LuceneConstants.TITLE, titleReader, termVector);
+			textField = new Field(LuceneConstants.BODY, titleReader, termVector);
+			
+			// Boost the title field
+			titleField.setBoost(0.5f);
+			
+			document.add(titleField);
+			document.add(textField);
+			
+		}
+		
+		docIDField = new Field(LuceneConstants.DOCID, "", Field.Store.YES, Field.Index.NOT_ANALYZED);
+		document.add(docIDField);
+		
+	}
+	
+	/**
+	 * Sets the document's values from the record, and returns it.
+	 * Same layout as Indexer.createDocument().
+	 * 
+	 * @param docID
+	 * @param record
+	 * @return
+	 * @throws IOException
+	 */
+	public Document fill(String docID, RecordReader record) throws IOException {
+		
+		if (isBasic) {
+			
+			textField.setValue(record);
+			
+		} else if (titleWeight > 0) {
+			
+			// Repeat the title ahead of the body, so its terms count titleWeight times
+			CharSequence title = record.readTitleInPlace();
+			titles.setLength(0);
+			for (int i = 0; i < titleWeight; i++) {
+				titles.append(title);
+				titles.append(' ');
+			}
+			record.setPrefix(titles);
+			textField.setValue(record);
+			
+		} else {
+			
+			// The title up to the first '.', the rest of the record is the body
+			titleReader.reset(record.readTitleInPlace());
+			titleField.setValue(titleReader);
+			textField.setValue(record);
+			
+		}
+		
+		docIDField.setValue(docID);
+		return document;
+		
+	}
+	
+}
@@ -2,10 +2,15 @@ package com.tutorialspoint.lucene;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -13,6 +18,9 @@ import org.apache.lucene.analysis.SimpleAnalyzer;
 import org.apache.lucene.analysis.StopAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.util.Version;
@@ -27,6 +35,8 @@ public class Experiment {
 	
 	private String queryFile; 				// queryFile from the parameterFile
 	private String docsFile; 				// docsFile from the parameterFile
+	private String truthFile; 				// truthFile from the parameterFile
+	private String outputFile; 				// outputFile from the parameterFile
 	private String indexDir; 				// Where to store the index
 	private boolean isBasic; 				// Basic/Advanced configuration
 	
@@ -34,6 +44,75 @@ public class Experiment {
 	private Searcher searcher; 				// Searches the index
 	private Benchmark benchmark; 			// Calculates statistics
     private PrintWriter outputStream; 		// Prints log
+    private FileOutputStream outputFileStream; 	// The output file under outputStream (synced at every checkpoint)
+    
+    private boolean isPruning; 				// Dynamic pruning (MaxScore) on/off
+    private boolean isPruningVerify; 		// Also run every query exhaustively and compare the rankings
+    private TermUpperBounds upperBounds; 	// Per-term score upper bounds, for pruning
+    private long postingsScored; 			// Total postings scored with pruning
+    private long postingsExhaustive; 		// Total postings an exhaustive evaluation would score
+    private int pruningMismatches; 			// Queries whose pruned ranking differs from the exhaustive one
+    
+    private ResultBuffer results; 			// Reusable buffer for the results of the current query
+    private List<ResultConsumer> consumers; // Fed from the buffer after every query
+    private ResultCache resultCache; 		// Results of recent queries, by query text (null if off)
+    private boolean isCompareCollectors; 	// Also time the old TopDocs path, for comparison
+    
+    private boolean isBatchMode; 			// Evaluate the whole query file term-at-a-time
+    private int batchMemoryMB; 				// Memory budget for the batch accumulators
+    private BatchEvaluator batchEvaluator; 	// The batch evaluator (null if batch mode is off)
+    
+    private boolean isWarmup; 				// Warm up the searcher before the timed query run
+    private int warmupQueries; 				// Number of queries to replay (untimed) during the warm-up
+    private int coldQueries; 				// Number of queries timed before the warm-up (the cold latencies)
+    private LatencyStats coldStats; 		// Latencies before/without the warm-up
+    private LatencyStats warmStats; 		// Latencies of the timed run, after the warm-up
+    
+    private PhaseProfiler profiler; 		// Allocation and GC accounting per phase
+    private int queriesExecuted; 			// Number of queries executed
+    
+    private String baselineMode; 			// none/save/compare
+    private String baselineFile; 			// Where the baseline report is saved
+    private RegressionGate regressionGate; 	// Compares the run against the baseline
+    private int regressions; 				// Number of metrics that regressed
+    
+    private Options options; 				// The optional parameters (for the load test and the index profile)
+    private IndexProfile indexProfile; 		// The index writer's tuning, and the build measurements
+    private boolean isLoadTest; 			// Run a load test instead of the query run
+    
+    private int titleWeight; 				// Title copies in the catch-all field (0 = separate title/body fields)
+    private boolean isCompareLayouts; 		// Also compare the split and the combined field layouts
+    private String[] fields; 				// The searched fields of the index layout
+    
+    private long budgetMillis; 				// Per-query time budget (0 = none)
+    private long budgetDocs; 				// Per-query work budget, in documents scored (0 = none)
+    private int truncatedQueries; 			// Queries stopped by the budget
+    private double truncatedPartialAP; 		// Total AP of the truncated queries, as returned
+    private double truncatedFullAP; 		// Total AP of the truncated queries, run to completion
+    private ResultBuffer fullResults; 		// Scratch buffer for re-running truncated queries
+    private long rerunNanos; 				// Time of those re-runs (taken out of the query run's time)
+    
+    private String binaryRunFile; 			// Also write the run in the binary columnar format (null if off)
+    private String significanceRun; 		// Binary run to test the significance against (null if off)
+    
+    private boolean isAnalysisCache; 		// Cache the query-side analysis
+    private String feedback; 				// Pseudo-relevance feedback: none/rm3/rocchio
+    private QueryExpander expander; 		// Expands the queries (null if feedback is off)
+    private String analysisCacheFile; 		// Where the query analysis cache is saved
+    private QueryAnalysisCache analysisCache; // Parsed queries by text (null if off)
+    private BinaryRunWriter binaryRunWriter; // Writes the binary run
+    
+    private int checkpointEvery; 			// Save the progress every N queries (0 = off)
+    private String checkpointFile; 			// Where the progress is saved
+    private boolean isResume; 				// Resume from the checkpoint, if there's one
+    private Checkpoint checkpoint; 			// The progress of the run (null if off)
+    private boolean isResumed; 				// The run resumed from a checkpoint
+    
+    private Analyzer analyzer; 				// The basic/advanced analyzer (set by buildIndex())
+    private Set<String> top20terms; 		// The stop-list of the collection
+    private int numIndexed; 				// Number of indexed documents
+    private long indexNanos; 				// Time of the basic/advanced index build (0 if resumed)
+    private long queryNanos; 				// Time of the query run
 
 	/**
 	 * Constructor.
@@ -50,11 +129,15 @@ public class Experiment {
 		// Read configuration
 		this.queryFile = queryFile;
 		this.docsFile = docsFile;
+		this.truthFile = truthFile;
+		this.outputFile = outputFile;
 		indexDir = "_index";
 		isBasic = retrievalAlgorithm.equalsIgnoreCase("basic") ? true : false;
 		
-		// Initialize output writer
-		outputStream = new PrintWriter(new FileWriter(outputFile));
+		// Profiling and baselines are off unless asked for
+		options = new Options();
+		profiler = new PhaseProfiler(false);
+		baselineMode = "none";
 		
 		// initialize benchmark object if given the truth file
 		if (!truthFile.equals("")) {
@@ -64,23 +147,129 @@ public class Experiment {
 	}
 	
 	/**
-	 * Creates a new index.
+	 * Reads the optional parameters:
+	 * 	- pruning=maxscore|none 		Evaluate long disjunctions with dynamic pruning (default: none)
+	 * 	- pruningVerify=true|false 		Compare every pruned ranking with the exhaustive one (default: false)
+	 * 	- resultCacheSize=N 			Cache the results of the last N distinct queries (default: 0, off)
+	 * 	- compareCollectors=true|false 	After the run, time the old TopDocs path against the streaming path (default: false)
+	 * 	- batchMode=true|false 			Evaluate the whole query file term-at-a-time (default: false)
+	 * 	- batchMemoryMB=N 				Memory budget for the batch accumulators (default: 256)
+	 * 	- warmup=true|false 			Warm up the searcher before the timed query run (default: false)
+	 * 	- warmupQueries=N 				Number of queries to replay, untimed, during the warm-up (default: 0)
+	 * 	- coldQueries=N 				Number of queries timed before the warm-up, as the cold latencies (default: 10)
+	 * 	- indexDir=path 				Where the index is built (default: _index)
+	 * 	- profile=true|false 			Record allocation, GC and peak heap for every phase, and report them per doc/query (default: false)
+	 * 	- sharedProcess=true|false 		Other runs share the process: GC and peak heap aren't reported (default: false; see MultiCollection)
+	 * 	- baselineMode=none|save|compare 	Save this run as the baseline, or compare it to the baseline (default: none)
+	 * 	- baselineFile=path 			The baseline report (default: baseline.txt)
+	 * 	- timeTolerance=X 				Allowed relative slowdown (default: 0.20)
+	 * 	- throughputTolerance=X 		Allowed relative throughput drop (default: 0.20)
+	 * 	- memoryTolerance=X 			Allowed relative memory growth (default: 0.20)
+	 * 	- qualityTolerance=X 			Allowed absolute MAP/Prec@k drop (default: 0.005)
+	 * 	- loadTest=true|false 			Replay the queries under load, instead of the query run (default: false)
+	 * 	- loadTestMode=open|closed|both 	Open loop (target QPS) and/or closed loop (N clients) (default: both)
+	 * 	- loadTestStorage=fs,mmap,... 	Storage backends to test: fs, mmap, nio, simple, ram (default: fs)
+	 * 	- loadTestStartQps=X 			First open-loop rate (default: 10)
+	 * 	- loadTestStepSeconds=N 		Duration of every load step (default: 10)
+	 * 	- loadTestSlaMs=X 				p99 latency objective for the open loop (default: 100)
+	 * 	- loadTestThreads=N 			Open-loop workers / max closed-loop clients (default: 64)
+	 * 	- fieldLayout=split|combined 	Advanced: separate title/body fields, or a single catch-all field (default: split)
+	 * 	- titleWeight=N 				Title copies in the catch-all field (default: 2)
+	 * 	- compareLayouts=true|false 	Advanced: compare the latency and MAP of both field layouts (default: false)
+	 * 	- index.* 						The index-build profile (see IndexProfile)
+	 * 	- queryBudgetMs=N 				Stop a query after N ms, returning its partial top-k (default: 0, off)
+	 * 	- queryBudgetDocs=N 			Stop a query after N documents scored (default: 0, off)
+	 * 	- checkpointEvery=N 			Save the progress every N queries, query-at-a-time runs only (default: 0, off)
+	 * 	- checkpointFile=path 			Where the progress is saved (default: <outputFile>.checkpoint)
+	 * 	- resume=true|false 			Resume from the checkpoint, if there's one (default: true if checkpointEvery is set)
+	 * 	- binaryRunFile=path 			Also write the run in the binary columnar format, with scores (default: off)
+	 * 	- significanceRun=path 			Test the run's AP against this binary run (t-test, bootstrap, permutation) (default: off)
+	 * 	- significancePermutations=N 	Bootstrap samples and permutations (default: 100000)
+	 * 	- significanceSeed=N 			Seed of the resamplings (default: 1)
+	 * 	- significanceThreads=N 		Size of the fork-join pool (default: number of processors)
+	 * 	- queryAnalysisCache=true|false Parse (and analyze) every distinct query text once, across search modes and runs (default: false)
+	 * 	- queryAnalysisFile=path 		Where the query analysis cache is saved (default: next to the index, <indexDir>.analysis)
+	 * 	- feedback=none|rm3|rocchio 	Expand every query from its top results' term vectors, and search again (default: none)
+	 * 	- feedbackDocs=N 				Top results to expand from (default: 10)
+	 * 	- feedbackTerms=N 				Expansion terms (default: 20)
+	 * 	- feedbackWeight=X 				Weight of the original query in the expanded one (default: 0.5)
+	 * 	- feedbackMaxClauses=N 			Max clauses of the expanded query (default: 64)
+	 * 	- feedbackBudgetMs=N 			Budget of the feedback stage (default: 0, none)
+	 * 	- stopListMemoryMB=N 			Off-heap memory for the stop-list term counts, spilled to disk beyond it (default: 64)
+	 * 	- metricsPort=N 				Serve the live metrics at http://127.0.0.1:N/metrics, Prometheus format (default: off; see MetricsServer)
+	 * 	- metricsJmx=true|false 		Also register the live metrics as a JMX MBean (default: false)
+	 * 
+	 * @param options
+	 */
+	public void setOptions(Options options) {
+		
+		this.options = options;
+		indexDir = options.getString("indexDir", indexDir);
+		isPruning = options.getString("pruning", "none").equalsIgnoreCase("maxscore");
+		isPruningVerify = options.getBoolean("pruningVerify", false);
+		int resultCacheSize = options.getInt("resultCacheSize", 0);
+		if (resultCacheSize > 0) {
+			resultCache = new ResultCache(resultCacheSize);
+		}
+		isCompareCollectors = options.getBoolean("compareCollectors", false);
+		isBatchMode = options.getBoolean("batchMode", false);
+		batchMemoryMB = options.getInt("batchMemoryMB", 256);
+		isLoadTest = options.getBoolean("loadTest", false);
+		if (options.getString("fieldLayout", "split").equalsIgnoreCase("combined")) {
+			titleWeight = options.getInt("titleWeight", 2);
+		}
+		isCompareLayouts = options.getBoolean("compareLayouts", false);
+		budgetMillis = options.getLong("queryBudgetMs", 0);
+		budgetDocs = options.getLong("queryBudgetDocs", 0);
+		checkpointEvery = options.getInt("checkpointEvery", 0);
+		checkpointFile = options.getString("checkpointFile", outputFile + ".checkpoint");
+		isResume = options.getBoolean("resume", checkpointEvery > 0);
+		binaryRunFile = options.getString("binaryRunFile", null);
+		significanceRun = options.getString("significanceRun", null);
+		isAnalysisCache = options.getBoolean("queryAnalysisCache", false);
+		analysisCacheFile = options.getString("queryAnalysisFile", indexDir + ".analysis");
+		feedback = options.getString("feedback", "none");
+		if (!feedback.equalsIgnoreCase("none") && !options.has("index.termVectors")) {
+			// Feedback reads the term vectors
+			options.set("index.termVectors", "true");
+		}
+		isWarmup = options.getBoolean("warmup", false);
+		warmupQueries = options.getInt("warmupQueries", 0);
+		coldQueries = options.getInt("coldQueries", 10);
+		profiler = new PhaseProfiler(options.getBoolean("profile", false), options.getBoolean("sharedProcess", false));
+		baselineMode = options.getString("baselineMode", "none");
+		baselineFile = options.getString("baselineFile", "baseline.txt");
+		regressionGate = new RegressionGate(options.getDouble("timeTolerance", 0.20),
+											options.getDouble("throughputTolerance", 0.20),
+											options.getDouble("memoryTolerance", 0.20),
+											options.getDouble("qualityTolerance", 0.005));
+		
+	}
+	
+	/**
+	 * Creates a new index, and returns the number of indexed documents.
 	 * 
 	 * @throws IOException
 	 */
-	private void createIndex(Analyzer analyzer) throws IOException {
+	private int createIndex(Analyzer analyzer) throws IOException {
 
 		int numIndexed;
 		
 		System.out.println("Starting index...");
 		
 		// Create the index
-		indexer = new Indexer(indexDir, analyzer, isBasic);
+		indexProfile = new IndexProfile(options);
+		indexer = new Indexer(indexDir, analyzer, isBasic, indexProfile);
+		indexer.setStopListMemory(options.getLong("stopListMemoryMB", 64) * 1024 * 1024);
+		indexer.setTitleWeight(titleWeight);
 		numIndexed = indexer.createIndex(docsFile);
 		indexer.close();
+		fields = indexer.getFields();
 		
 		System.out.println(numIndexed + " files successfully indexed.");
 		
+		return numIndexed;
+		
    }
 	
 	/**
@@ -88,6 +277,15 @@ public class Experiment {
 	 * 
 	 */
 	private void deleteIndex() {
+		deleteIndex(indexDir);
+	}
+	
+	/**
+	 * Deletes the index files in the given directory.
+	 * 
+	 * @param indexDir
+	 */
+	private static void deleteIndex(String indexDir) {
 	   
 	   int numDeleted = 0;
 	   
@@ -116,61 +314,114 @@ public class Experiment {
    }
 	
 	/**
-	 * Searches the index for the given query,
-	 * using the given analyzer.
+	 * Searches the index for the given query.
+	 * The query is collected once into the result buffer (or served from the cache),
+	 * and the buffer is then fed to all the consumers: the run file, the benchmark and the cache.
 	 * 
 	 * @param id
 	 * @param searchQuery
-	 * @param analyzer
 	 * @throws IOException
 	 * @throws ParseException
 	 */
-	private void search(String id, String searchQuery, Analyzer analyzer) throws IOException, ParseException {
+	private void search(String id, String searchQuery) throws IOException, ParseException {
 		
 		System.out.print("\nExecuting queryID #" + id + " \"");
 		System.out.print(searchQuery.substring(0, Math.min(searchQuery.length(), LuceneConstants.QUERY_PREVIEW)));
 		System.out.println("...\"");
 		
-		// Initialize the searcher
-		searcher = new Searcher(indexDir, analyzer, isBasic);
-	      
-		// Execute the query
-		TopDocs hits = searcher.search(searchQuery);
+		// Execute the query, unless it's in the cache
+		boolean isCached = resultCache != null && resultCache.lookup(searchQuery, results);
+		if (!isCached) {
+			long queryStart = System.nanoTime();
+			searcher.search(searchQuery, results);
+			(isWarmup ? warmStats : coldStats).record(System.nanoTime() - queryStart);
+		}
+		queriesExecuted++;
 	   
-		System.out.println(hits.totalHits + " documents found:");
+		System.out.println(results.getTotalHits() + " documents found:");
 		
-		// If no hits were made, print 'dummy'
-		if (hits.totalHits == 0) {
-			
+		// If the query went over the budget, measure what the truncation cost
+		if (results.isTruncated()) {
+			reportTruncation(id, searchQuery);
+		}
+		
+		// If pruning was enabled, report the postings scored
+		if (upperBounds != null && !isCached) {
+			reportPruning(searchQuery);
+		}
+		
+		// If no hits were made, the run file gets a 'dummy'
+		if (results.size() == 0) {
 			System.out.println("\t+ dummy");
-            outputStream.printf("q%s,dummy,1\n", id);
-			
-		} else {
+		}
 		
-			// Else, print the search results
-			int rank = 1;
-			for(ScoreDoc scoreDoc : hits.scoreDocs) {
+		// Feed the results to the run file, the benchmark and the cache
+		for (ResultConsumer consumer : consumers) {
+			consumer.consume(id, results);
+		}
+		
+	}
 	
-				Document doc = searcher.getDocument(scoreDoc);
-				String docID = doc.get(LuceneConstants.DOCID);
-//				System.out.print("\t+ Rank: " + rank);
-//				System.out.print(" | docID: " + docID);
-//				System.out.println(" | Score: " + scoreDoc.score);
-				outputStream.printf("q%s,doc%s,%d\n", id, docID, rank);
-				rank++;
-				
-			}
+	/**
+	 * Counts a query that was stopped by the budget, and if benchmarking,
+	 * re-runs it to completion to compare its AP with the partial results'.
+	 * The re-run's time is taken out of the query run's time (time.queries.ms and the throughput).
+	 * 
+	 * @param id
+	 * @param searchQuery
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void reportTruncation(String id, String searchQuery) throws IOException, ParseException {
+		
+		truncatedQueries++;
+		System.out.println("Truncated by the query budget (partial results)");
 		
+		if (benchmark == null) {
+			return;
 		}
 		
-        // If benchmarking was enabled, calculate the AP
-		if (benchmark != null) {
-			benchmark.analyzeQuery(id, hits, searcher);
-			benchmark.printQueryStatistics(id);
+		long start = System.nanoTime();
+		searcher.searchWithoutBudget(searchQuery, fullResults);
+		double partialAP = benchmark.averagePrecision(id, results);
+		double fullAP = benchmark.averagePrecision(id, fullResults);
+		rerunNanos += System.nanoTime() - start;
+		truncatedPartialAP += partialAP;
+		truncatedFullAP += fullAP;
+		System.out.println("AP = " + partialAP + " (" + fullAP + " without the budget)");
+		
+	}
+	
+	/**
+	 * Prints the postings scored by the last (pruned) query,
+	 * and compares its ranking with the exhaustive one if asked to.
+	 * 
+	 * @param searchQuery
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void reportPruning(String searchQuery) throws IOException, ParseException {
+		
+		MaxScoreEvaluator evaluator = searcher.getEvaluator();
+		postingsScored += evaluator.getPostingsScored();
+		postingsExhaustive += evaluator.getPostingsTotal();
+		System.out.println("Postings scored = " + evaluator.getPostingsScored() + " / " + evaluator.getPostingsTotal()
+				+ " (" + evaluator.getDocsSkipped() + " documents skipped)");
+		
+		if (!isPruningVerify) {
+			return;
 		}
 		
-		// Close the searcher
-		searcher.close();
+		// The rankings must be identical
+		TopDocs exhaustive = searcher.searchExhaustive(searchQuery);
+		boolean same = exhaustive.scoreDocs.length == results.size();
+		for (int i = 0; same && i < results.size(); i++) {
+			same = exhaustive.scoreDocs[i].doc == results.getDoc(i);
+		}
+		if (!same) {
+			pruningMismatches++;
+			System.out.println("Warning: pruned ranking differs from the exhaustive ranking");
+		}
 		
 	}
 	
@@ -190,48 +441,276 @@ public class Experiment {
 		
 		try {
 			
-			// Initialize the input stream from the query file
-			inputStream = new BufferedReader(new FileReader(queryFile));
+			// Initialize the output writer
+			openOutput();
+			
+			// Initialize the searcher (once for all the queries)
+			searcher = new Searcher(indexDir, analyzer, fields);
+			searcher.setAnalysisCache(analysisCache);
+			if (upperBounds != null) {
+				searcher.setUpperBounds(upperBounds);
+			}
+			if (budgetMillis > 0 || budgetDocs > 0) {
+				searcher.setBudget(budgetMillis, budgetDocs);
+				fullResults = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+			}
+			if (!feedback.equalsIgnoreCase("none") && isBatchMode) {
+				// The batch evaluator scores the original queries only
+				System.out.println("Feedback isn't applied in batch mode.");
+			} else if (!feedback.equalsIgnoreCase("none")) {
+				expander = new QueryExpander(searcher.getIndexSearcher().getIndexReader(), fields, feedback,
+											 options.getInt("feedbackDocs", 10),
+											 options.getInt("feedbackTerms", 20),
+											 (float) options.getDouble("feedbackWeight", 0.5),
+											 options.getInt("feedbackMaxClauses", 64),
+											 options.getLong("feedbackBudgetMs", 0));
+				searcher.setExpander(expander);
+			}
 			
-			// Start reading the query file
-			char space = ' ';
-			String line = inputStream.readLine();
-	        while (line != null) {
+			// Initialize the result buffer and its consumers
+			results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+			searcher.resolveDocIDs(results);
+			consumers = new ArrayList<ResultConsumer>();
+			consumers.add(new RunFileWriter(outputStream));
+			if (binaryRunFile != null && isResumed) {
+				// The binary run is written whole, at the end: it can't be resumed
+				System.out.println("Binary run '" + binaryRunFile + "' isn't written on a resumed run.");
+			} else if (binaryRunFile != null) {
+				binaryRunWriter = new BinaryRunWriter(binaryRunFile);
+				consumers.add(binaryRunWriter);
+			}
+			if (benchmark != null) {
+				consumers.add(benchmark);
+			}
+			if (resultCache != null) {
+				consumers.add(resultCache);
+			}
+			
+			// Warm up the searcher; the queries timed before the warm-up are the cold latencies
+			coldStats = new LatencyStats("Cold");
+			warmStats = new LatencyStats("Warm");
+			if (isWarmup) {
+				IndexWarmer warmer = new IndexWarmer(searcher, indexDir);
+				warmer.warm(QueryRecord.load(queryFile), coldQueries, warmupQueries);
+				coldStats = warmer.getColdStats();
+			}
+			
+			if (isBatchMode) {
+				
+				// Evaluate the whole query file term-at-a-time
+				batchEvaluator = new BatchEvaluator(searcher, batchMemoryMB * 1024L * 1024L);
+				batchEvaluator.run(QueryRecord.load(queryFile), results, consumers);
+				queriesExecuted = batchEvaluator.getQueriesBatched() + batchEvaluator.getQueriesSearched();
+				
+			} else {
+				
+				// Initialize the input stream from the query file
+				inputStream = new BufferedReader(new FileReader(queryFile));
+			
+				// Start reading the query file
+				char space = ' ';
+				int completed = 0;
+				int skip = isResumed ? checkpoint.getQueriesCompleted() : 0;
+				String line = inputStream.readLine();
+		        while (line != null) {
 	        	
-	    		// Extract the ID
-	    		id = line.substring(3);
+		    		// Extract the ID
+		    		id = line.substring(3);
 	        		
-	    		// Read the next line, which is ".W"
-	    		line = inputStream.readLine();
+		    		// Read the next line, which is ".W"
+		    		line = inputStream.readLine();
 	    		
-	    		// Read the data
-	    		query = new StringBuilder();
-	    		while ((line = inputStream.readLine()) != null && !line.startsWith(".I ")) {
-	    			query.append(line);
-	    			query.append(space);
-	        	}
+		    		// Read the data
+		    		query = new StringBuilder();
+		    		while ((line = inputStream.readLine()) != null && !line.startsWith(".I ")) {
+		    			query.append(line);
+		    			query.append(space);
+		        	}
+	    		
+		    		// Skip the queries completed before the restart
+		    		if (completed < skip) {
+		    			if (++completed == skip && !id.equals(checkpoint.getLastQueryID())) {
+		    				throw new IOException("The query file doesn't match the checkpoint (queryID #" + id + ")");
+		    			}
+		    			continue;
+		    		}
 	    		
-	    		// Search query
-	    		search(id, query.toString(), analyzer);
+		    		// Search query
+		    		search(id, query.toString());
+		    		
+		    		// Save the progress every few queries
+		    		completed++;
+		    		if (checkpointEvery > 0 && completed % checkpointEvery == 0) {
+		    			saveCheckpoint(id, completed);
+		    		}
 	            
-	        }
+		        }
+		        
+			}
 	        
 	        // If benchmarking was enabled, calculate the MAP
 	        if (benchmark != null) {
 	        	System.out.println("\nMAP = " + benchmark.calculateMAP());
+	        	
+	        	// Test it against the reference run
+	        	if (significanceRun != null) {
+	        		Benchmark reference = new Benchmark(truthFile);
+	        		reference.evaluate(new BinaryRunReader(significanceRun));
+	        		int permutations = options.getInt("significancePermutations", 100000);
+	        		new SignificanceTest(benchmark, reference,
+	        							 options.getLong("significanceSeed", 1),
+	        							 options.getInt("significanceThreads", Runtime.getRuntime().availableProcessors()))
+	        			.print("this run", significanceRun, permutations, permutations);
+	        	}
+	        }
+	        
+	        // If feedback was on, print the expansions and the feedback stage latency
+	        if (expander != null) {
+	        	expander.print();
+	        }
+	        
+	        // If a query budget was set, print the truncated queries and their MAP impact
+	        if (budgetMillis > 0 || budgetDocs > 0) {
+	        	System.out.println("\nTruncated queries = " + truncatedQueries + " / " + queriesExecuted);
+	        	if (benchmark != null && truncatedQueries > 0) {
+	        		System.out.println("MAP impact = " + (truncatedPartialAP - truncatedFullAP) / queriesExecuted
+	        				+ " (truncated queries' mean AP = " + truncatedPartialAP / truncatedQueries
+	        				+ ", " + truncatedFullAP / truncatedQueries + " without the budget)");
+	        		System.out.println("Re-runs to completion = " + rerunNanos / 1000000 + " ms (not in the query time)");
+	        	}
+	        }
+	        
+	        // If pruning was enabled, print the total postings scored
+	        if (upperBounds != null) {
+	        	System.out.println("\nPostings scored = " + postingsScored + " / " + postingsExhaustive);
+	        	if (isPruningVerify) {
+	        		System.out.println("Pruning mismatches = " + pruningMismatches);
+	        	}
+	        }
+	        
+	        // If batch mode was enabled, print the postings decoded
+	        if (batchEvaluator != null) {
+	        	System.out.println("\nPostings decoded = " + batchEvaluator.getPostingsDecoded()
+	        			+ " (sequential: " + batchEvaluator.getPostingsSequential() + ")");
+	        	System.out.println("Queries batched = " + batchEvaluator.getQueriesBatched()
+	        			+ ", searched one-by-one = " + batchEvaluator.getQueriesSearched());
+	        }
+	        
+	        // Print the cold and warm latency distributions
+	        if (coldStats.getCount() > 0 || warmStats.getCount() > 0) {
+	        	System.out.println();
+	        	coldStats.print();
+	        	warmStats.print();
+	        }
+	        if (batchEvaluator != null) {
+	        	System.out.println("\nQuery latency: not measured in batch mode (the queries are evaluated together)");
+	        }
+	        
+	        // If the cache was enabled, print its hit rate
+	        if (resultCache != null) {
+	        	System.out.println("\nResult cache hits = " + resultCache.getHits() + " / " + (resultCache.getHits() + resultCache.getMisses()));
 	        }
         
 		} finally {
             if (inputStream != null) {
                 inputStream.close();
             }
+            if (searcher != null) {
+            	searcher.close();
+            }
             if (outputStream != null) {
                 outputStream.close();
             }
+            if (binaryRunWriter != null) {
+            	binaryRunWriter.close();
+            }
         }
 		
 	}
 	
+	/**
+	 * Opens the output file. When resuming, anything written after the checkpoint is dropped,
+	 * and the results are appended from there (so no query is written twice).
+	 * An output shorter than the checkpoint lost results the checkpoint counts as done, so it fails.
+	 * 
+	 * @throws IOException
+	 */
+	private void openOutput() throws IOException {
+		
+		if (isResumed) {
+			RandomAccessFile file = new RandomAccessFile(outputFile, "rw");
+			try {
+				if (file.length() < checkpoint.getOutputOffset()) {
+					throw new IOException("The output file '" + outputFile + "' is shorter than the checkpoint ("
+							+ file.length() + " < " + checkpoint.getOutputOffset() + " bytes)");
+				}
+				file.setLength(checkpoint.getOutputOffset());
+			} finally {
+				file.close();
+			}
+		}
+		outputFileStream = new FileOutputStream(outputFile, isResumed);
+		outputStream = new PrintWriter(new OutputStreamWriter(outputFileStream));
+		
+	}
+	
+	/**
+	 * Saves the progress: the last completed query, the output length and the benchmark.
+	 * The output is on disk before the checkpoint that counts it is saved.
+	 * 
+	 * @param id
+	 * @param completed
+	 * @throws IOException
+	 */
+	private void saveCheckpoint(String id, int completed) throws IOException {
+		
+		outputStream.flush();
+		outputFileStream.getFD().sync();
+		checkpoint.setProgress(id, completed, outputFileStream.getChannel().position());
+		checkpoint.save(checkpointFile, benchmark);
+		
+	}
+	
+	/**
+	 * Describes the index the run searches, so a checkpoint is only resumed against the same index.
+	 * 
+	 * @return
+	 */
+	private String getIndexConfig() {
+		
+		File docs = new File(docsFile);
+		return (isBasic ? "basic" : "advanced") + ",titleWeight=" + titleWeight
+				+ ",termVectors=" + options.getBoolean("index.termVectors", false)
+				+ "," + docs.getAbsolutePath() + "," + docs.length() + "," + docs.lastModified();
+		
+	}
+	
+	/**
+	 * Loads the checkpoint, if there's one for this configuration and its index is still there.
+	 * 
+	 * @throws IOException
+	 */
+	private void loadCheckpoint() throws IOException {
+		
+		checkpoint = Checkpoint.load(checkpointFile, benchmark);
+		if (checkpoint == null) {
+			return;
+		}
+		
+		if (checkpoint.getIndexConfig().equals(getIndexConfig()) && new File(indexDir).isDirectory()) {
+			isResumed = true;
+			System.out.println("Resuming after queryID #" + checkpoint.getLastQueryID()
+					+ " (" + checkpoint.getQueriesCompleted() + " queries completed)");
+		} else {
+			System.out.println("The checkpoint doesn't match this configuration, starting over.");
+			checkpoint = null;
+			if (benchmark != null) {
+				benchmark = new Benchmark(truthFile);
+			}
+		}
+		
+	}
+	
 	/**
 	 * Runs a single retrieval experiment.
 	 * 
@@ -240,20 +719,54 @@ public class Experiment {
 	 */
 	public void run() throws IOException, ParseException {
 		
-		// Delete the old index
-		deleteIndex();
+		buildIndex();
+		runQueries();
+		
+	}
+	
+	/**
+	 * The first part of the experiment: builds the index (twice, the first time for the stop-list),
+	 * or picks it up from the checkpoint.
+	 * 
+	 * @throws IOException
+	 */
+	public void buildIndex() throws IOException {
 		
-		// Create a new index with a SimpleAnalyzer
-		createIndex(new SimpleAnalyzer(Version.LUCENE_36));		
+		// Resume from the checkpoint, skipping the index build
+		if (isResume) {
+			loadCheckpoint();
+		}
 		
-		// Fetch the top 20 repeating terms in the collection
-		Set<String> top20terms = indexer.getTop20Terms();
+		if (isResumed) {
+			
+			numIndexed = checkpoint.getNumIndexed();
+			top20terms = checkpoint.getTop20Terms();
+			
+		} else {
 		
-		// Delete the old index, again :(
-		deleteIndex();
+			// Delete the old index
+			profiler.begin("deleteIndex");
+			deleteIndex();
+			profiler.end();
+			
+			// Create a new index with a SimpleAnalyzer
+			profiler.begin("createIndex(simple)");
+			numIndexed = createIndex(new SimpleAnalyzer(Version.LUCENE_36));
+			profiler.end(numIndexed, "doc");
+			
+			// Fetch the top 20 repeating terms in the collection
+			profiler.begin("getTop20Terms");
+			top20terms = indexer.getTop20Terms();
+			profiler.end();
+			
+			// Delete the old index, again :(
+			profiler.begin("deleteIndex");
+			deleteIndex();
+			profiler.end();
+			
+		}
 		
 		// Let the user choose the analyzer type (basic/advanced)
-		Analyzer analyzer;
 		if (isBasic) {
 			analyzer = new StopAnalyzer(Version.LUCENE_36, top20terms);
 			System.out.println("\n*** Using Basic Analyzer *** \n");
@@ -264,12 +777,439 @@ public class Experiment {
 			System.out.println("\n*** Using Advanced Analyzer *** \n");
 		}
 		
-		// Create a new index with a basic/advanced analyzer
-		createIndex(analyzer);
+		if (isResumed) {
+			
+			// The index is already built
+			fields = Indexer.getFields(isBasic, titleWeight);
+			if (isPruning) {
+				upperBounds = TermUpperBounds.load(indexDir);
+			}
+			
+		} else {
+			
+			// Create a new index with a basic/advanced analyzer
+			profiler.begin("createIndex");
+			long indexStart = System.nanoTime();
+			numIndexed = createIndex(analyzer);
+			indexNanos = System.nanoTime() - indexStart;
+			profiler.end(numIndexed, "doc");
+			
+			// Save the term upper bounds next to the index, for pruning
+			if (isPruning) {
+				profiler.begin("createUpperBounds");
+				upperBounds = indexer.createUpperBounds(indexDir);
+				profiler.end();
+			}
+			
+			// The first checkpoint, so a restart doesn't build the index again
+			if (checkpointEvery > 0) {
+				checkpoint = new Checkpoint(getIndexConfig(), top20terms, numIndexed);
+				checkpoint.setProgress("", 0, 0);
+				checkpoint.save(checkpointFile, benchmark);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * The second part of the experiment: runs the queries against the index built by buildIndex(),
+	 * and prints the reports.
+	 * 
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void runQueries() throws IOException, ParseException {
+		
+		// Parse (and analyze) every distinct query text once, if asked to
+		// (the saved cache is kept out of the index directory, which every run wipes)
+		if (isAnalysisCache) {
+			analysisCache = QueryAnalysisCache.load(analysisCacheFile, QueryAnalysisCache.fingerprint(analyzer, top20terms, fields));
+		}
 		
 		// Execute the queries
-		readQueries(analyzer);
+		if (isLoadTest) {
+			runLoadTest(analyzer);
+		} else {
+			profiler.begin("readQueries");
+			long queryStart = System.nanoTime();
+			readQueries(analyzer);
+			queryNanos = System.nanoTime() - queryStart - rerunNanos;
+			profiler.end(queriesExecuted, "query");
+		}
+		
+		// Save the analyzed queries for the next run
+		if (analysisCache != null) {
+			analysisCache.print();
+			analysisCache.save(analysisCacheFile);
+		}
+		if (isLoadTest) {
+			return;
+		}
+		
+		// The run is complete, the next one starts over
+		if (checkpoint != null) {
+			Checkpoint.delete(checkpointFile);
+		}
+		
+		// Compare the old TopDocs path with the streaming path
+		if (isCompareCollectors) {
+			profiler.begin("compareCollectors");
+			compareCollectors();
+			profiler.end();
+		}
+		
+		// Compare the field layouts (Advanced only)
+		if (isCompareLayouts && !isBasic) {
+			profiler.begin("compareLayouts");
+			compareLayouts(analyzer);
+			profiler.end();
+		}
+		
+		// Print the index build report, with the resulting query latency
+		if (indexProfile != null) {
+			indexProfile.print(getTimedLatency());
+		}
+		
+		// Print the allocation and GC report
+		profiler.print();
+		
+		// Save the run as the baseline, or compare it with the baseline
+		if (!baselineMode.equalsIgnoreCase("none")) {
+			RunReport report = createReport();
+			if (baselineMode.equalsIgnoreCase("save")) {
+				report.save(baselineFile);
+				System.out.println("\nBaseline saved to '" + baselineFile + "'.");
+			} else {
+				
+				// Without a baseline nothing is compared, which must not pass the gate
+				RunReport baseline;
+				try {
+					baseline = RunReport.load(baselineFile);
+				} catch (IOException e) {
+					System.out.println("\nError: Reading the baseline '" + baselineFile + "' (" + e.getMessage() + "), the run fails the gate.");
+					baseline = null;
+					regressions = 1;
+				}
+				if (baseline != null) {
+					
+					// A resumed run didn't build the index, so it has no index metrics to compare
+					String[] unmeasured = isResumed ? new String[] {"time.index.", "throughput.index.", "memory.index."} : new String[0];
+					regressions = regressionGate.compare(baseline, report, unmeasured);
+					
+				}
+				
+			}
+		}
+		
+	}
+	
+	/**
+	 * Replays the queries under load, for every storage backend, to find the saturation points.
+	 * 
+	 * @param analyzer
+	 * @throws IOException
+	 */
+	private void runLoadTest(Analyzer analyzer) throws IOException {
+		
+		String name = isBasic ? "basic" : (titleWeight > 0 ? "advanced-combined" : "advanced");
+		LoadTester loadTester = new LoadTester(analyzer, name, fields, QueryRecord.load(queryFile),
+											   options.getInt("loadTestStepSeconds", 10),
+											   options.getDouble("loadTestSlaMs", 100),
+											   options.getInt("loadTestThreads", 64));
+		loadTester.setAnalysisCache(analysisCache);
+		for (String storage : options.getString("loadTestStorage", "fs").split(",")) {
+			loadTester.run(indexDir, storage.trim(),
+						   options.getString("loadTestMode", "both"),
+						   options.getDouble("loadTestStartQps", 10));
+		}
+		
+	}
+	
+	/**
+	 * Compares the old TopDocs path with the streaming path, in passes of their own after the run.
+	 * Both do the same work for every query: search, write the run lines (to a discarded writer)
+	 * and judge the hits against the truth. The TopDocs path loads every hit's document once for
+	 * the run line and once more for the judgment, as it used to; the streaming path collects into
+	 * the buffer and resolves the docIDs without loading documents.
+	 * After an untimed pass of each, the timed passes alternate (TopDocs first, then streaming first),
+	 * so neither path gets the caches the other one warmed.
+	 * 
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void compareCollectors() throws IOException, ParseException {
+		
+		List<QueryRecord> queries = QueryRecord.load(queryFile);
+		Truth truth = truthFile.equals("") ? null : new Truth(truthFile);
+		PrintWriter discarded = new PrintWriter(new Writer() {
+			public void write(char[] buffer, int offset, int length) {
+			}
+			public void flush() {
+			}
+			public void close() {
+			}
+		});
+		RunFileWriter runWriter = new RunFileWriter(discarded);
+		ResultBuffer buffer = new ResultBuffer(LuceneConstants.MAX_SEARCH);
 		
+		// Same setup as the run, without the budget (the TopDocs path has none)
+		Searcher comparisonSearcher = new Searcher(indexDir, analyzer, fields);
+		comparisonSearcher.setAnalysisCache(analysisCache);
+		if (upperBounds != null) {
+			comparisonSearcher.setUpperBounds(upperBounds);
+		}
+		
+		long topDocsNanos = 0;
+		long streamingNanos = 0;
+		try {
+			
+			// Untimed passes
+			timeTopDocsPath(comparisonSearcher, queries, discarded, truth);
+			timeStreamingPath(comparisonSearcher, queries, buffer, runWriter, truth);
+			
+			// Timed passes, in both orders
+			topDocsNanos += timeTopDocsPath(comparisonSearcher, queries, discarded, truth);
+			streamingNanos += timeStreamingPath(comparisonSearcher, queries, buffer, runWriter, truth);
+			streamingNanos += timeStreamingPath(comparisonSearcher, queries, buffer, runWriter, truth);
+			topDocsNanos += timeTopDocsPath(comparisonSearcher, queries, discarded, truth);
+			
+		} finally {
+			comparisonSearcher.close();
+		}
+		
+		System.out.println("\nCollector comparison (" + queries.size() + " queries, 2 timed passes each):");
+		System.out.println("TopDocs path = " + topDocsNanos / 1000000 + " ms");
+		System.out.println("Streaming path = " + streamingNanos / 1000000 + " ms");
+		
+	}
+	
+	/**
+	 * Runs the queries the old way: searches into a TopDocs, and loads every hit's document
+	 * once for the run line and once more for the judgment. Returns the elapsed time, in nanoseconds.
+	 * 
+	 * @param searcher
+	 * @param queries
+	 * @param runStream
+	 * @param truth 	null if there's no truth file (no judgment)
+	 * @return
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private static long timeTopDocsPath(Searcher searcher, List<QueryRecord> queries, PrintWriter runStream, Truth truth) throws IOException, ParseException {
+		
+		long start = System.nanoTime();
+		
+		for (QueryRecord query : queries) {
+			TopDocs hits = searcher.search(query.text);
+			if (hits.scoreDocs.length == 0) {
+				runStream.write("q" + query.id + ",dummy,1\n");
+			}
+			int rank = 1;
+			for (ScoreDoc scoreDoc : hits.scoreDocs) {
+				Document doc = searcher.getIndexSearcher().doc(scoreDoc.doc);
+				runStream.write("q" + query.id + ",doc" + doc.get(LuceneConstants.DOCID) + "," + rank++ + "\n");
+			}
+			if (truth != null) {
+				for (ScoreDoc scoreDoc : hits.scoreDocs) {
+					truth.isRelevant(query.id, searcher.getIndexSearcher().doc(scoreDoc.doc).get(LuceneConstants.DOCID));
+				}
+			}
+		}
+		
+		return System.nanoTime() - start;
+		
+	}
+	
+	/**
+	 * Runs the queries the streaming way: collects into the buffer, writes the run lines
+	 * and judges the hits from the buffer's docIDs. Returns the elapsed time, in nanoseconds.
+	 * 
+	 * @param searcher
+	 * @param queries
+	 * @param results
+	 * @param runWriter
+	 * @param truth 	null if there's no truth file (no judgment)
+	 * @return
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private static long timeStreamingPath(Searcher searcher, List<QueryRecord> queries, ResultBuffer results,
+			RunFileWriter runWriter, Truth truth) throws IOException, ParseException {
+		
+		long start = System.nanoTime();
+		
+		for (QueryRecord query : queries) {
+			searcher.search(query.text, results);
+			runWriter.consume(query.id, results);
+			if (truth != null) {
+				for (int i = 0; i < results.size(); i++) {
+					if (results.hasNumericDocIDs()) {
+						truth.isRelevant(query.id, results.getNumericDocID(i));
+					} else {
+						truth.isRelevant(query.id, results.getDocID(i));
+					}
+				}
+			}
+		}
+		
+		return System.nanoTime() - start;
+		
+	}
+	
+	/**
+	 * Compares the two Advanced field layouts: separate title/body fields (two clauses per query term)
+	 * and the single catch-all field (one clause per query term).
+	 * Each layout is indexed into its own directory, and the query file is run once untimed,
+	 * then once timed, with the results going to the benchmark only. The layout directories are deleted afterwards.
+	 * 
+	 * @param analyzer
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void compareLayouts(Analyzer analyzer) throws IOException, ParseException {
+		
+		List<QueryRecord> queries = QueryRecord.load(queryFile);
+		int weight = titleWeight > 0 ? titleWeight : options.getInt("titleWeight", 2);
+		
+		System.out.println("\nField layout comparison:");
+		System.out.printf("%-10s %10s %10s %10s %10s\n", "layout", "clauses", "mean(ms)", "p99(ms)", "MAP");
+		
+		for (int layoutWeight : new int[] {0, weight}) {
+			
+			// Index the layout
+			String layoutDir = indexDir + (layoutWeight > 0 ? "_combined" : "_split");
+			Indexer layoutIndexer = new Indexer(layoutDir, analyzer, false);
+			layoutIndexer.setTitleWeight(layoutWeight);
+			layoutIndexer.createIndex(docsFile);
+			layoutIndexer.close();
+			
+			Searcher layoutSearcher = new Searcher(layoutDir, analyzer, layoutIndexer.getFields());
+			ResultBuffer layoutResults = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+			Benchmark layoutBenchmark = truthFile.equals("") ? null : new Benchmark(truthFile);
+			LatencyStats latency = new LatencyStats(layoutWeight > 0 ? "combined" : "split");
+			long clauses = 0;
+			
+			try {
+				
+				// Untimed pass, to warm up the layout
+				for (QueryRecord query : queries) {
+					layoutSearcher.search(query.text, layoutResults);
+				}
+				
+				// Timed pass
+				for (QueryRecord query : queries) {
+					long start = System.nanoTime();
+					layoutSearcher.search(query.text, layoutResults);
+					latency.record(System.nanoTime() - start);
+					clauses += countClauses(layoutSearcher.query);
+					if (layoutBenchmark != null) {
+						layoutBenchmark.analyzeQuery(query.id, layoutResults);
+					}
+				}
+				
+			} finally {
+				layoutSearcher.close();
+				deleteIndex(layoutDir);
+				new File(layoutDir).delete();
+			}
+			
+			System.out.printf("%-10s %10.1f %10.3f %10.3f %10s\n",
+					layoutWeight > 0 ? "combined" : "split",
+					clauses * 1.0 / Math.max(1, queries.size()),
+					latency.getMean(), latency.getPercentile(99),
+					layoutBenchmark != null ? String.format("%.4f", layoutBenchmark.calculateMAP()) : "-");
+			
+		}
+		
+	}
+	
+	/**
+	 * Counts the term clauses of the given query (the postings lists it traverses).
+	 * 
+	 * @param query
+	 * @return
+	 */
+	private static int countClauses(Query query) {
+		
+		if (query instanceof BooleanQuery) {
+			int count = 0;
+			for (BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+				count += countClauses(clause.getQuery());
+			}
+			return count;
+		}
+		return 1;
+		
+	}
+	
+	/**
+	 * Collects the run's measurements into a report.
+	 * 
+	 * @return
+	 */
+	public RunReport createReport() {
+		
+		RunReport report = new RunReport();
+		
+		// Timings and throughput (a resumed run didn't build the index)
+		if (indexProfile != null) {
+			report.put("time.index.ms", indexNanos / 1e6);
+			report.put("time.index.merge.ms", indexProfile.getMergeMillis());
+			report.put("throughput.index.docsPerSec", numIndexed / Math.max(1e-9, indexNanos / 1e9));
+		}
+		report.put("time.queries.ms", queryNanos / 1e6);
+		report.put("throughput.queries.perSec", queriesExecuted / Math.max(1e-9, queryNanos / 1e9));
+		
+		// Latency of the timed run (none in batch mode)
+		LatencyStats latency = getTimedLatency();
+		if (latency != null && latency.getCount() > 0) {
+			report.put("time.query.p50.ms", latency.getPercentile(50));
+			report.put("time.query.p99.ms", latency.getPercentile(99));
+		}
+		
+		// Memory (process-wide, so not this run's when others share the process)
+		if (!profiler.isShared()) {
+			report.put("memory.peakHeap.MB", profiler.getPeakHeapBytes() / 1048576.0);
+		}
+		
+		// Allocations and GC per document indexed and per query executed (when profiling)
+		profiler.report(report, "createIndex", "index");
+		profiler.report(report, "readQueries", "queries");
+		
+		// Quality
+		if (benchmark != null) {
+			report.put("quality.MAP", benchmark.calculateMAP());
+			report.put("quality.Prec@5", benchmark.calculateMeanPrecisionAt(5));
+			report.put("quality.Prec@10", benchmark.calculateMeanPrecisionAt(10));
+		}
+		
+		return report;
+		
+	}
+	
+	/**
+	 * Returns the latencies of the timed run: the warm ones, or the cold ones if there was no warm-up.
+	 * In batch mode there are none (the warm-up's cold latencies aren't the run's), so returns null.
+	 * 
+	 * @return
+	 */
+	private LatencyStats getTimedLatency() {
+		
+		if (batchEvaluator != null) {
+			return null;
+		}
+		return warmStats.getCount() > 0 ? warmStats : coldStats;
+		
+	}
+	
+	/**
+	 * Returns the number of metrics that regressed compared with the baseline.
+	 * 
+	 * @return
+	 */
+	public int getRegressions() {
+		return regressions;
 	}
 
 }
@@ -0,0 +1,278 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.util.Version;
+
+/**
+ * The index-build profile: maps the "index.*" optional parameters to an IndexWriterConfig,
+ * and collects the build measurements for the build report.
+ * 	- index.ramBufferMB=X 					RAM buffer before a flush (default: 16)
+ * 	- index.maxBufferedDocs=N 				Also flush every N documents (default: -1, off)
+ * 	- index.mergePolicy=tiered|logbytesize|logdoc 	The merge policy (default: tiered)
+ * 	- index.mergeFactor=N 					Segments merged at once / per tier (default: 10)
+ * 	- index.mergeScheduler=concurrent|serial 	Merge in background threads, or in the indexing thread (default: concurrent)
+ * 	- index.mergeThreads=N 					Max concurrent merge threads (default: Lucene's, max(1, min(3, cores/2)))
+ * 	- index.compoundFile=true|false 		Pack every segment into a compound file (default: true)
+ * 	- index.forceMerge=N 					Merge down to N segments at the end of the build (default: 0, off)
+ * 	- index.termVectors=true|false 			Store term vectors (no positions) in the text fields, for feedback (default: false)
+ * 	- index.reuseDocuments=true|false 		Reuse one Document and its Fields per indexing thread, instead of new ones per record (default: true)
+ * 
+ * @author amir
+ * 
+ */
+public class IndexProfile {
+
+	// The profile
+	private double ramBufferMB;
+	private int maxBufferedDocs;
+	private String mergePolicy;
+	private int mergeFactor;
+	private String mergeScheduler;
+	private int mergeThreads;
+	private boolean isCompoundFile;
+	private int forceMergeSegments;
+	private boolean isTermVectors;
+	private boolean isReuseDocuments;
+	
+	// The build measurements
+	private int flushes; 					// Flushes triggered while adding documents
+	private long flushNanos; 				// Time of the adds that flushed
+	private AtomicInteger merges; 			// Merges (merge passes, with the serial scheduler)
+	private AtomicLong mergeNanos; 			// Time spent merging, over all the merge threads
+	private long forceMergeNanos; 			// Time of the final force merge
+	private long closeNanos; 				// Time of the final commit (and waiting for the merges)
+	private int segments; 					// Segments in the final index
+	private long indexBytes; 				// Size of the final index
+	private long bytesWritten; 				// Total bytes written during the build
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param options
+	 */
+	public IndexProfile(Options options) {
+		
+		ramBufferMB = options.getDouble("index.ramBufferMB", IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+		maxBufferedDocs = options.getInt("index.maxBufferedDocs", IndexWriterConfig.DISABLE_AUTO_FLUSH);
+		mergePolicy = options.getString("index.mergePolicy", "tiered");
+		mergeFactor = options.getInt("index.mergeFactor", 10);
+		mergeScheduler = options.getString("index.mergeScheduler", "concurrent");
+		mergeThreads = options.getInt("index.mergeThreads", 0);
+		isCompoundFile = options.getBoolean("index.compoundFile", true);
+		forceMergeSegments = options.getInt("index.forceMerge", 0);
+		isTermVectors = options.getBoolean("index.termVectors", false);
+		isReuseDocuments = options.getBoolean("index.reuseDocuments", true);
+		
+		merges = new AtomicInteger();
+		mergeNanos = new AtomicLong();
+		
+	}
+	
+	/**
+	 * Creates the index writer's configuration from the profile.
+	 * The merge scheduler is timed, for the build report.
+	 * 
+	 * @param analyzer
+	 * @return
+	 */
+	public IndexWriterConfig createConfig(Analyzer analyzer) {
+		
+		IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_36, analyzer);
+		config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+		config.setRAMBufferSizeMB(ramBufferMB);
+		config.setMaxBufferedDocs(maxBufferedDocs);
+		
+		// Merge policy
+		MergePolicy policy;
+		if (mergePolicy.equalsIgnoreCase("logbytesize") || mergePolicy.equalsIgnoreCase("logdoc")) {
+			LogMergePolicy logPolicy = mergePolicy.equalsIgnoreCase("logdoc") ? new LogDocMergePolicy() : new LogByteSizeMergePolicy();
+			logPolicy.setMergeFactor(mergeFactor);
+			logPolicy.setUseCompoundFile(isCompoundFile);
+			policy = logPolicy;
+		} else {
+			TieredMergePolicy tieredPolicy = new TieredMergePolicy();
+			tieredPolicy.setMaxMergeAtOnce(mergeFactor);
+			tieredPolicy.setSegmentsPerTier(mergeFactor);
+			tieredPolicy.setUseCompoundFile(isCompoundFile);
+			policy = tieredPolicy;
+		}
+		config.setMergePolicy(policy);
+		
+		// Merge scheduler
+		MergeScheduler scheduler;
+		if (mergeScheduler.equalsIgnoreCase("serial")) {
+			scheduler = new SerialMergeScheduler() {
+				@Override
+				public synchronized void merge(IndexWriter writer) throws CorruptIndexException, IOException {
+					long start = System.nanoTime();
+					super.merge(writer);
+					recordMerge(System.nanoTime() - start);
+				}
+			};
+		} else {
+			ConcurrentMergeScheduler concurrentScheduler = new ConcurrentMergeScheduler() {
+				@Override
+				protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+					long start = System.nanoTime();
+					super.doMerge(merge);
+					recordMerge(System.nanoTime() - start);
+				}
+			};
+			if (mergeThreads > 0) {
+				// The merge count first: it can't be set below the thread count
+				concurrentScheduler.setMaxMergeCount(mergeThreads + 2);
+				concurrentScheduler.setMaxThreadCount(mergeThreads);
+			}
+			scheduler = concurrentScheduler;
+		}
+		config.setMergeScheduler(scheduler);
+		
+		return config;
+		
+	}
+	
+	/**
+	 * Returns the term vector setting of the text fields.
+	 * 
+	 * @return
+	 */
+	public Field.TermVector getTermVector() {
+		return isTermVectors ? Field.TermVector.YES : Field.TermVector.NO;
+	}
+	
+	/**
+	 * Returns the number of merge threads of the build: 0 if the merges run in the indexing thread,
+	 * Lucene's default (max(1, min(3, cores/2))) unless index.mergeThreads is set.
+	 * 
+	 * @return
+	 */
+	public int getMergeThreads() {
+		
+		if (mergeScheduler.equalsIgnoreCase("serial")) {
+			return 0;
+		}
+		return mergeThreads > 0 ? mergeThreads : Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2));
+		
+	}
+	
+	/**
+	 * Checks if the indexing loop reuses its Document and Fields.
+	 * 
+	 * @return
+	 */
+	public boolean isReuseDocuments() {
+		return isReuseDocuments;
+	}
+	
+	/**
+	 * Returns the number of segments to merge down to at the end of the build (0 = off).
+	 * 
+	 * @return
+	 */
+	public int getForceMergeSegments() {
+		return forceMergeSegments;
+	}
+	
+	/**
+	 * Records an add that flushed the RAM buffer.
+	 * 
+	 * @param nanos
+	 */
+	public void recordFlush(long nanos) {
+		
+		flushes++;
+		flushNanos += nanos;
+		
+	}
+	
+	/**
+	 * Records a merge (called from the merge threads).
+	 * 
+	 * @param nanos
+	 */
+	private void recordMerge(long nanos) {
+		
+		merges.incrementAndGet();
+		mergeNanos.addAndGet(nanos);
+		
+	}
+	
+	/**
+	 * Records the end of the build: the final force merge and commit, and the resulting index.
+	 * 
+	 * @param forceMergeNanos
+	 * @param closeNanos
+	 * @param segments
+	 * @param indexBytes
+	 * @param bytesWritten
+	 */
+	public void recordClose(long forceMergeNanos, long closeNanos, int segments, long indexBytes, long bytesWritten) {
+		
+		this.forceMergeNanos = forceMergeNanos;
+		this.closeNanos = closeNanos;
+		this.segments = segments;
+		this.indexBytes = indexBytes;
+		this.bytesWritten = bytesWritten;
+		
+	}
+	
+	/**
+	 * Returns the number of segments in the final index.
+	 * 
+	 * @return
+	 */
+	public int getSegments() {
+		return segments;
+	}
+	
+	/**
+	 * Returns the total time spent merging, in ms.
+	 * 
+	 * @return
+	 */
+	public double getMergeMillis() {
+		return mergeNanos.get() / 1e6;
+	}
+	
+	/**
+	 * Prints the build report, with the latency of the queries run against the index.
+	 * 
+	 * @param latency null if it wasn't measured (batch mode)
+	 */
+	public void print(LatencyStats latency) {
+		
+		System.out.println("\nIndex build report:");
+		System.out.printf("\tProfile: ramBufferMB=%.1f, maxBufferedDocs=%d, mergePolicy=%s, mergeFactor=%d, mergeScheduler=%s(%s), compoundFile=%b, forceMerge=%d, reuseDocuments=%b\n",
+				ramBufferMB, maxBufferedDocs, mergePolicy, mergeFactor, mergeScheduler, mergeThreads > 0 ? Integer.toString(mergeThreads) : "default", isCompoundFile, forceMergeSegments, isReuseDocuments);
+		System.out.println("\tSegments = " + segments);
+		System.out.printf("\tFlushes = %d (%.1f ms)\n", flushes, flushNanos / 1e6);
+		System.out.printf("\tMerges = %d (%.1f ms)\n", merges.get(), mergeNanos.get() / 1e6);
+		System.out.printf("\tForce merge = %.1f ms, commit = %.1f ms\n", forceMergeNanos / 1e6, closeNanos / 1e6);
+		System.out.printf("\tBytes written = %.2f MB (index = %.2f MB, write amplification = %.2f)\n",
+				bytesWritten / 1048576.0, indexBytes / 1048576.0, bytesWritten / Math.max(1.0, indexBytes));
+		if (latency != null && latency.getCount() > 0) {
+			System.out.printf("\tQuery latency: mean = %.3f ms, p50 = %.3f ms, p99 = %.3f ms\n",
+					latency.getMean(), latency.getPercentile(50), latency.getPercentile(99));
+		} else if (latency == null) {
+			System.out.println("\tQuery latency: not measured (batch mode)");
+		}
+		
+	}
+	
+}
@@ -0,0 +1,217 @@
+package com.tutorialspoint.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Prints a snapshot of the index statistics, as JSON, without reading any postings:
+ * 	- Documents, deletions, and the index size
+ * 	- Per segment: documents, deletions, size, compound or not
+ * 	- Per field: vocabulary size, postings (sum of docFreq), the largest docFreq,
+ * 	  and the tokens and average length recorded by the Indexer at commit time
+ * 
+ * Everything comes from the segments file, the term dictionary and the commit user data,
+ * so it takes a single pass over the terms, unlike getTop20Terms() which decodes every posting.
+ * 
+ * Usage: IndexStatistics <indexDir> [<outputFile>]
+ * 
+ * @author amir
+ * 
+ */
+public class IndexStatistics {
+
+	/**
+	 * The statistics of a single field.
+	 * 
+	 */
+	private static class FieldStats {
+		long terms; 			// Vocabulary size
+		long postings; 			// Sum of docFreq
+		int maxDocFreq; 		// Largest docFreq
+		String maxDocFreqTerm; 	// Its term
+	}
+	
+	/**
+	 * Collects the statistics of the index and writes them as JSON.
+	 * 
+	 * @param indexDirectoryPath
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(String indexDirectoryPath, PrintWriter out) throws IOException {
+		
+		long start = System.nanoTime();
+		Directory directory = FSDirectory.open(new File(indexDirectoryPath));
+		
+		// The segments, from the segments file
+		SegmentInfos segmentInfos = new SegmentInfos();
+		segmentInfos.read(directory);
+		
+		IndexReader reader = IndexReader.open(directory);
+		Map<String,FieldStats> fields = new TreeMap<String,FieldStats>();
+		Map<String,String> commitData;
+		int maxDoc;
+		int numDocs;
+		
+		try {
+			
+			maxDoc = reader.maxDoc();
+			numDocs = reader.numDocs();
+			commitData = reader.getIndexCommit().getUserData();
+			
+			// One pass over the term dictionary, the docFreq is stored with every term
+			TermEnum terms = reader.terms();
+			FieldStats stats = null;
+			String field = null;
+			while (terms.next()) {
+				
+				Term term = terms.term();
+				if (term.field() != field) { 	// Field names are interned
+					field = term.field();
+					stats = new FieldStats();
+					fields.put(field, stats);
+				}
+				
+				int docFreq = terms.docFreq();
+				stats.terms++;
+				stats.postings += docFreq;
+				if (docFreq > stats.maxDocFreq) {
+					stats.maxDocFreq = docFreq;
+					stats.maxDocFreqTerm = term.text();
+				}
+				
+			}
+			terms.close();
+			
+		} finally {
+			reader.close();
+		}
+		
+		// Index
+		long indexBytes = 0;
+		for (String file : directory.listAll()) {
+			indexBytes += directory.fileLength(file);
+		}
+		out.println("{");
+		out.println("  \"index\": \"" + escape(indexDirectoryPath) + "\",");
+		out.println("  \"documents\": " + numDocs + ",");
+		out.println("  \"deletedDocuments\": " + (maxDoc - numDocs) + ",");
+		out.println("  \"bytes\": " + indexBytes + ",");
+		
+		// Segments
+		out.println("  \"segments\": [");
+		for (int i = 0; i < segmentInfos.size(); i++) {
+			SegmentInfo info = segmentInfos.info(i);
+			out.print("    {\"name\": \"" + info.name + "\", \"documents\": " + info.docCount
+					+ ", \"deletedDocuments\": " + info.getDelCount()
+					+ ", \"bytes\": " + info.sizeInBytes(true)
+					+ ", \"compound\": " + info.getUseCompoundFile() + "}");
+			out.println(i < segmentInfos.size() - 1 ? "," : "");
+		}
+		out.println("  ],");
+		
+		// Fields
+		out.println("  \"fields\": {");
+		int f = 0;
+		for (Map.Entry<String,FieldStats> entry : fields.entrySet()) {
+			
+			String field = entry.getKey();
+			FieldStats stats = entry.getValue();
+			out.print("    \"" + escape(field) + "\": {\"terms\": " + stats.terms
+					+ ", \"postings\": " + stats.postings
+					+ ", \"avgPostingsPerTerm\": " + format(stats.terms == 0 ? 0 : stats.postings * 1.0 / stats.terms)
+					+ ", \"maxDocFreq\": " + stats.maxDocFreq
+					+ ", \"maxDocFreqTerm\": \"" + escape(stats.maxDocFreqTerm) + "\"");
+			
+			// Recorded at index time (not for indexes built before the totals were committed)
+			String tokens = commitData == null ? null : commitData.get("tokens." + field);
+			String docs = commitData == null ? null : commitData.get("docs." + field);
+			if (tokens != null && docs != null) {
+				long instances = Long.parseLong(docs);
+				out.print(", \"tokens\": " + tokens
+						+ ", \"avgLength\": " + format(instances == 0 ? 0 : Long.parseLong(tokens) * 1.0 / instances)
+						+ ", \"avgUniqueTerms\": " + format(instances == 0 ? 0 : stats.postings * 1.0 / instances));
+			}
+			out.print("}");
+			out.println(++f < fields.size() ? "," : "");
+			
+		}
+		out.println("  },");
+		
+		out.println("  \"elapsedMs\": " + (System.nanoTime() - start) / 1000000);
+		out.println("}");
+		out.flush();
+		
+	}
+	
+	/**
+	 * Formats a decimal for JSON (always with a '.').
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+	
+	/**
+	 * Escapes a string for JSON.
+	 * 
+	 * @param s
+	 * @return
+	 */
+	private static String escape(String s) {
+		
+		if (s == null) {
+			return "";
+		}
+		StringBuilder escaped = new StringBuilder();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				escaped.append('\\').append(c);
+			} else if (c < 0x20) {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+		
+	}
+	
+	public static void main(String[] args) {
+		
+		if (args.length < 1) {
+			System.out.println("Usage: IndexStatistics <indexDir> [<outputFile>]");
+			return;
+		}
+		
+		try {
+			
+			PrintWriter out = args.length > 1 ? new PrintWriter(args[1]) : new PrintWriter(System.out);
+			write(args[0], out);
+			if (args.length > 1) {
+				out.close();
+				System.out.println("Index statistics saved to '" + args[1] + "'.");
+			}
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
+}
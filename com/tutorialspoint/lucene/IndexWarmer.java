@@ -0,0 +1,160 @@
+package com.tutorialspoint.lucene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryParser.ParseException;
+
+/**
+ * Warms up the searcher before the timed query run:
+ * 	- First times a sample of the queries, before anything is preloaded: the "cold" distribution
+ * 	  (the norms and docIDs aren't loaded yet, and the JIT hasn't compiled the scoring loop;
+ * 	  the index files may still be in the page cache from the build)
+ * 	- Reads every index file once, so it's in the OS page cache
+ * 	- Loads the norms of the searched fields, and the docID field cache
+ * 	- Optionally replays a sample of the queries (untimed), so the JIT compiles the scoring loop
+ * 
+ * Note: the term dictionary index is loaded when the reader is opened, so it needs no warming.
+ * 
+ * @author amir
+ * 
+ */
+public class IndexWarmer {
+
+	private Searcher searcher; 				// The searcher to warm up
+	private String indexDir; 				// The index directory
+	private LatencyStats coldStats; 		// Latencies of the queries timed before the warm-up
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param searcher
+	 * @param indexDir
+	 */
+	public IndexWarmer(Searcher searcher, String indexDir) {
+		
+		this.searcher = searcher;
+		this.indexDir = indexDir;
+		coldStats = new LatencyStats("Cold");
+		
+	}
+	
+	/**
+	 * Times up to coldSize queries, then warms up the searcher, replaying up to sampleSize queries
+	 * (both samples evenly spread over the list).
+	 * 
+	 * @param queries
+	 * @param coldSize
+	 * @param sampleSize
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void warm(List<QueryRecord> queries, int coldSize, int sampleSize) throws IOException, ParseException {
+		
+		ResultBuffer scratch = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+		
+		// Time a sample of the queries, before any preloading
+		for (QueryRecord query : sample(queries, coldSize)) {
+			long queryStart = System.nanoTime();
+			searcher.search(query.text, scratch);
+			coldStats.record(System.nanoTime() - queryStart);
+		}
+		
+		System.out.println("Warming up...");
+		long start = System.nanoTime();
+		
+		// Read the index files
+		long bytes = touchFiles();
+		
+		// Load the norms and the docID cache
+		IndexReader reader = searcher.getIndexSearcher().getIndexReader();
+		for (String field : searcher.getFields()) {
+			reader.norms(field);
+		}
+		if (searcher.getNumericDocIDs() == null) {
+			searcher.getDocIDs();
+		}
+		
+		long preloadNanos = System.nanoTime() - start;
+		
+		// Replay a sample of the queries (untimed)
+		List<QueryRecord> replayed = sample(queries, sampleSize);
+		for (QueryRecord query : replayed) {
+			searcher.search(query.text, scratch);
+		}
+		
+		System.out.printf("Warm-up done: %d cold queries timed, %d index bytes read, norms and docIDs loaded in %d ms, %d queries replayed in %d ms\n",
+				coldStats.getCount(), bytes, preloadNanos / 1000000, replayed.size(), (System.nanoTime() - start - preloadNanos) / 1000000);
+		
+	}
+	
+	/**
+	 * Returns up to size queries, evenly spread over the list.
+	 * 
+	 * @param queries
+	 * @param size
+	 * @return
+	 */
+	private static List<QueryRecord> sample(List<QueryRecord> queries, int size) {
+		
+		List<QueryRecord> sample = new ArrayList<QueryRecord>();
+		if (size <= 0 || queries.isEmpty()) {
+			return sample;
+		}
+		int step = Math.max(1, queries.size() / size);
+		for (int i = 0; i < queries.size() && sample.size() < size; i += step) {
+			sample.add(queries.get(i));
+		}
+		return sample;
+		
+	}
+	
+	/**
+	 * Reads every file in the index directory once, and returns the number of bytes read.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private long touchFiles() throws IOException {
+		
+		long bytes = 0;
+		byte[] buffer = new byte[64 * 1024];
+		
+		File[] files = new File(indexDir).listFiles();
+		if (files == null) {
+			return 0;
+		}
+		for (File file : files) {
+			if (!file.isFile()) {
+				continue;
+			}
+			InputStream inputStream = new FileInputStream(file);
+			try {
+				int n;
+				while ((n = inputStream.read(buffer)) > 0) {
+					bytes += n;
+				}
+			} finally {
+				inputStream.close();
+			}
+		}
+		
+		return bytes;
+		
+	}
+	
+	/**
+	 * Returns the latencies of the queries timed before the warm-up.
+	 * 
+	 * @return
+	 */
+	public LatencyStats getColdStats() {
+		return coldStats;
+	}
+	
+}
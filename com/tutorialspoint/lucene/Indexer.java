@@ -5,13 +5,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,8 +21,9 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.Similarity;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.ReaderUtil;
 
 /**
  * Creates and manages the index.
@@ -36,9 +33,14 @@ import org.apache.lucene.store.FSDirectory;
  */
 public class Indexer {
 
-	private Directory indexDirectory; 		// The index directory
+	private CountingDirectory indexDirectory; 	// The index directory (counting the bytes written)
 	private IndexWriter writer; 			// Creates and maintains an index
 	private boolean isBasic; 				// Basic/Advanced mode
+	private int titleWeight; 				// Title copies in the catch-all field (0 = separate title/body fields)
+	private IndexProfile profile; 			// The index writer's tuning, and the build measurements
+	private CountingAnalyzer counter; 		// Counts the tokens per field, recorded in the commit
+	private long stopListMemoryBytes; 		// Memory of the term frequency table (for the stop-list)
+	private ThreadLocal<DocumentTemplate> templates; 	// The reused document, per indexing thread
 	
 	/**
 	 * Constructor.
@@ -46,45 +48,157 @@ public class Indexer {
 	 * @param indexDirectoryPath
 	 * @throws IOException
 	 */
-	@SuppressWarnings("deprecation")
 	public Indexer(String indexDirectoryPath, Analyzer analyzer, boolean isBasic) throws IOException {
 
+		this(indexDirectoryPath, analyzer, isBasic, new IndexProfile(new Options()));
+		
+	}
+	
+	/**
+	 * Constructor, with the given index-build profile.
+	 * 
+	 * @param indexDirectoryPath
+	 * @param analyzer
+	 * @param isBasic
+	 * @param profile
+	 * @throws IOException
+	 */
+	public Indexer(String indexDirectoryPath, Analyzer analyzer, boolean isBasic, IndexProfile profile) throws IOException {
+
 		this.isBasic = isBasic;
+		this.profile = profile;
+		stopListMemoryBytes = 64L * 1024 * 1024;
+		templates = new ThreadLocal<DocumentTemplate>();
 		
 		// Open the directory where the index is saved
-		indexDirectory = FSDirectory.open(new File(indexDirectoryPath));
+		indexDirectory = new CountingDirectory(FSDirectory.open(new File(indexDirectoryPath)));
 
-		// Initialize the index writer
+		// Initialize the index writer, counting the indexed tokens
+		counter = new CountingAnalyzer(analyzer);
 		writer = new IndexWriter(indexDirectory,
-								 analyzer,
-								 true,
-								 IndexWriter.MaxFieldLength.UNLIMITED);
+								 profile.createConfig(counter));
 		
 	}
 
 	/**
-	 * Closes the index writer.
+	 * Switches the Advanced configuration to a single catch-all field,
+	 * where the title is indexed titleWeight times ahead of the body.
+	 * Every query term then becomes one clause instead of two (title and body),
+	 * and the title preference is kept through the term frequencies.
+	 * 
+	 * @param titleWeight
+	 */
+	public void setTitleWeight(int titleWeight) {
+		this.titleWeight = titleWeight;
+		templates = new ThreadLocal<DocumentTemplate>();
+	}
+	
+	/**
+	 * Returns the searchable fields of the index layout.
+	 * 
+	 * @return
+	 */
+	public String[] getFields() {
+		
+		return getFields(isBasic, titleWeight);
+		
+	}
+	
+	/**
+	 * Returns the searchable fields of the given index layout.
+	 * 
+	 * @param isBasic
+	 * @param titleWeight
+	 * @return
+	 */
+	public static String[] getFields(boolean isBasic, int titleWeight) {
+		
+		if (isBasic) {
+			return new String[] {LuceneConstants.CONTENTS};
+		} else if (titleWeight > 0) {
+			return new String[] {LuceneConstants.ALL};
+		}
+		return new String[] {LuceneConstants.TITLE, LuceneConstants.BODY};
+		
+	}
+	
+	/**
+	 * Closes the index writer (after merging down the segments, if the profile asks to),
+	 * and records the resulting index in the profile.
+	 * The token totals per field are committed with the index (see IndexStatistics).
 	 * 
 	 * @throws CorruptIndexException
 	 * @throws IOException
 	 */
 	public void close() throws CorruptIndexException, IOException {
 		
-		// Close the index writer
+		// Merge down the segments
+		long start = System.nanoTime();
+		if (profile.getForceMergeSegments() > 0) {
+			writer.forceMerge(profile.getForceMergeSegments());
+		}
+		long forceMergeNanos = System.nanoTime() - start;
+		
+		// Commit the token totals, and close the index writer
+		start = System.nanoTime();
+		writer.commit(counter.getCommitData());
 		writer.close();
+		long closeNanos = System.nanoTime() - start;
+		
+		// Count the segments, and save the numeric docID map next to the index
+		IndexReader reader = IndexReader.open(indexDirectory);
+		int segments = reader.getSequentialSubReaders().length;
+		DocIDMap docIDMap = DocIDMap.build(reader);
+		reader.close();
+		if (docIDMap != null) {
+			long bytes = docIDMap.save(indexDirectory);
+			System.out.println("DocID map saved (" + docIDMap.getIDs().length + " docs, " + bytes + " bytes).");
+		}
+		long indexBytes = 0;
+		for (String file : indexDirectory.listAll()) {
+			indexBytes += indexDirectory.fileLength(file);
+		}
+		
+		profile.recordClose(forceMergeNanos, closeNanos, segments, indexBytes, indexDirectory.getBytesWritten());
 		
 	}
+	
+	/**
+	 * Returns the index-build profile, with the build measurements.
+	 * 
+	 * @return
+	 */
+	public IndexProfile getProfile() {
+		return profile;
+	}
 
 	/**
 	 * Creates a new document from the given parameters and returns it.
 	 * Basic configuration indexes the entire document in the "contents" field,
-	 * Advanced configuration indexes the title and the body separately.
+	 * Advanced configuration indexes the title and the body separately,
+	 * or together in the catch-all field (with the title repeated titleWeight times).
+	 * The text is streamed from the record to the analyzer: only the title is read ahead,
+	 * the body is never held in memory.
+	 * Unless the profile turns it off, the same document is refilled for every record (see DocumentTemplate).
 	 * 
 	 * @param docID
-	 * @param contents
+	 * @param record
 	 * @return
+	 * @throws IOException
 	 */
-	private Document createDocument(String docID, String contents) {
+	private Document createDocument(String docID, RecordReader record) throws IOException {
+		
+		if (profile.isReuseDocuments()) {
+			
+			// The calling thread's template, created on its first record
+			DocumentTemplate template = templates.get();
+			if (template == null) {
+				template = new DocumentTemplate(isBasic, titleWeight, profile.getTermVector());
+				templates.set(template);
+			}
+			return template.fill(docID, record);
+			
+		}
 		
 		// Initialize the document object
 		Document document = new Document();
@@ -93,24 +207,47 @@ public class Indexer {
 		
 			// Define the 'contents' field
 			Field contentsField = new Field(LuceneConstants.CONTENTS,
-									        new StringReader(contents));
+									        record,
+									        profile.getTermVector());
 			
 			// Add the fields to the document
 			document.add(contentsField);
 
+		} else if (titleWeight > 0) {
+			
+			// Split the title on the fly, up to the first '.'
+			String title = record.readTitle();
+			
+			// Repeat the title ahead of the body, so its terms count titleWeight times
+			StringBuilder titles = new StringBuilder();
+			for (int i = 0; i < titleWeight; i++) {
+				titles.append(title);
+				titles.append(' ');
+			}
+			record.setPrefix(titles.toString());
+			
+			// Define the 'all' field
+			Field allField = new Field(LuceneConstants.ALL,
+									   record,
+									   profile.getTermVector());
+			
+			// Add the field to the document
+			document.add(allField);
+			
 		} else {
 			
-			int firstDot = contents.indexOf('.');
-			String title = contents.substring(0, firstDot);
-			String body = contents.substring(firstDot+1);
+			// Split the title on the fly, up to the first '.'; the rest of the record is the body
+			String title = record.readTitle();
 			
 			// Define the 'title' field
 			Field titleField = new Field(LuceneConstants.TITLE,
-								         new StringReader(title));
+								         new StringReader(title),
+								         profile.getTermVector());
 			
 			// Define the 'body' field
 			Field bodyField = new Field(LuceneConstants.BODY,
-								        new StringReader(body));
+								        record,
+								        profile.getTermVector());
 			
 			// Boost the title field
 			titleField.setBoost(0.5f);
@@ -141,15 +278,25 @@ public class Indexer {
 	 * and then adds it to the index using the index writer.
 	 * 
 	 * @param docID
-	 * @param contents
+	 * @param record
 	 * @throws CorruptIndexException
 	 * @throws IOException
 	 */
-	private void indexDocument(String docID, String contents) throws CorruptIndexException, IOException {
+	private void indexDocument(String docID, RecordReader record) throws CorruptIndexException, IOException {
 		
 //		System.out.println("\tIndexing docID #" + docID + "...");
-		Document document = createDocument(docID, contents);
+		Document document = createDocument(docID, record);
+		
+		// An add that empties the RAM buffer has flushed a segment
+		int buffered = writer.numRamDocs();
+		long start = System.nanoTime();
 		writer.addDocument(document);
+		long nanos = System.nanoTime() - start;
+		if (writer.numRamDocs() <= buffered) {
+			profile.recordFlush(nanos);
+		}
+		Metrics.ADD_LATENCY.record(nanos);
+		Metrics.DOCS_INDEXED.inc();
 		
 	}
 
@@ -164,7 +311,6 @@ public class Indexer {
 	public int createIndex(String docsPath) throws IOException {
 
 		BufferedReader inputStream = null;
-		StringBuilder contents;
 		String id;
 		
 		try {
@@ -172,26 +318,17 @@ public class Indexer {
 			// Initialize the input stream from the docs file
 			inputStream = new BufferedReader(new FileReader(docsPath));
 			
-			// Start reading the docs file
-			char space = ' ';
-			String line = inputStream.readLine();
-	        while (line != null) {
-	        	
-	    		// Extract the ID
-	    		id = line.substring(3);
-	        		
-	    		// Read the next line, which is ".W"
-	    		line = inputStream.readLine();
+			// Start reading the docs file, one record at a time
+			RecordReader record = new RecordReader(inputStream);
+			long charsRead = 0;
+	        while ((id = record.next()) != null) {
 	    		
-	    		// Read the data
-	    		contents = new StringBuilder();
-	    		while ((line = inputStream.readLine()) != null && !line.startsWith(".I ")) {
-	    			contents.append(line);
-	    			contents.append(space);
-	        	}
+	    		// Create the document, streaming its text to the analyzer
+	    		indexDocument(id, record);
 	    		
-	    		// Create the document
-	    		indexDocument(id, contents.toString());
+	    		// The text is fully read by now
+	    		Metrics.CHARS_PARSED.add(record.getCharsRead() - charsRead);
+	    		charsRead = record.getCharsRead();
 	            
 	        }
         
@@ -205,8 +342,52 @@ public class Indexer {
 		
 	}
 	
+	/**
+	 * Computes the per-term score upper bounds of the searchable fields,
+	 * and saves them in the index directory (for dynamic pruning).
+	 * 
+	 * @param indexDirectoryPath
+	 * @return
+	 * @throws CorruptIndexException
+	 * @throws IOException
+	 */
+	public TermUpperBounds createUpperBounds(String indexDirectoryPath) throws CorruptIndexException, IOException {
+		
+		IndexReader reader = IndexReader.open(indexDirectory);
+		TermUpperBounds upperBounds;
+		
+		try {
+			
+			// Basic configuration searches 'contents', Advanced searches 'title' and 'body' (or 'all')
+			upperBounds = TermUpperBounds.compute(reader, getFields(), Similarity.getDefault());
+			
+		} finally {
+			reader.close();
+		}
+		
+		// Save it next to the index
+		upperBounds.save(indexDirectoryPath);
+		System.out.println(upperBounds.size() + " term upper bounds saved.");
+		
+		return upperBounds;
+		
+	}
+	
+	/**
+	 * Sets the memory of the term frequency table used by getTop20Terms() (default: 64 MB).
+	 * 
+	 * @param stopListMemoryBytes
+	 */
+	public void setStopListMemory(long stopListMemoryBytes) {
+		this.stopListMemoryBytes = stopListMemoryBytes;
+	}
+	
 	/**
 	 * Returns the top 20 terms from the collection.
+	 * The frequencies are kept in an off-heap table that spills to disk,
+	 * so the vocabulary never has to fit in the heap.
+	 * A term that is in several fields counts with its frequency in the last one (in term order,
+	 * e.g. title over body), as it always did: the other fields' frequencies aren't added.
 	 * 
 	 * @return
 	 * @throws CorruptIndexException
@@ -215,55 +396,59 @@ public class Indexer {
 	public Set<String> getTop20Terms() throws CorruptIndexException, IOException {
 		
 		IndexReader reader;
-		Map<String, Integer> unsortedFrequencyMap;
-		Map<String, Integer> sortedFrequencyMap;
+		TermFrequencyTable frequencies;
+		Map<String, Long> sortedFrequencyMap;
 		Set<String> top20;
-		int termFrequency;
-		String termText;
+		long termFrequency;
 		
-		unsortedFrequencyMap = new HashMap<String, Integer>();
+		frequencies = new TermFrequencyTable(stopListMemoryBytes);
 		reader = IndexReader.open(indexDirectory);
 		termFrequency = 0;
-		termText = "";
+		
+		// The indexed fields, in term order
+		List<String> fieldNames = new ArrayList<String>(ReaderUtil.getIndexedFields(reader));
+		Collections.sort(fieldNames);
 		
 		// Iterate over all the terms in the collection
 		TermEnum terms = reader.terms();
+		TermDocs td = reader.termDocs();
 		while (terms.next()) {
 			
-			// Grab the term
-			Term term = terms.term();
-			termText = term.text();
+			// Skip the term if a later field has it too (that field's frequency is the one kept)
+			if (isInLaterField(reader, fieldNames, terms.term())) {
+				continue;
+			}
 			
 			// Iterate over all <document, frequency> pairs for that term and sum up the frequencies
-			TermDocs td = reader.termDocs(term);
+			td.seek(terms);
 			while (td.next()) {
 				termFrequency += td.freq();
 			}
-			td.close();
 			
-			// Insert the <term, frequency> pair to the unsorted dictionary
-			unsortedFrequencyMap.put(termText, termFrequency);
+			// Add the <term, frequency> pair to the table
+			frequencies.add(terms.term().text(), termFrequency);
 			
 			// Reset counter
 			termFrequency = 0;
 
 		}
+		td.close();
 		terms.close();
 		reader.close();
 		
-		// Sort the frequency dictionary
-		sortedFrequencyMap = sortByComparator(unsortedFrequencyMap);
+		// Merge the spilled runs into the top 20, by descending frequency (top() deletes the runs)
+		if (frequencies.getRunCount() > 0) {
+			System.out.println("Term frequencies spilled to disk: " + frequencies.getRunCount() + " runs, "
+					+ frequencies.getSpilledEntries() + " entries");
+		}
+		sortedFrequencyMap = frequencies.top(20);
 
 		// Add the top 20 entries to the return set
 		top20 = new HashSet<String>();
-		int counter = 0;
 		System.out.println("Top 20 terms are:");
-		for (Map.Entry<String, Integer> entry : sortedFrequencyMap.entrySet()) {
+		for (Map.Entry<String, Long> entry : sortedFrequencyMap.entrySet()) {
 			System.out.println("\t" + entry.getKey() + " - " + entry.getValue());
 			top20.add(entry.getKey());
-			if(++counter == 20) {
-				break;
-			}
 		}
 		
 		return top20;
@@ -272,33 +457,22 @@ public class Indexer {
 	
 	/**
 	 * Helper method for getTop20Terms().
-	 * Sorts the map by values, instead of keys, by descending order.
-	 * Taken from: http://www.mkyong.com/java/how-to-sort-a-map-in-java/
+	 * Checks if the term's text is also in a field that comes after the term's field.
 	 * 
-	 * @param unsortMap
+	 * @param reader
+	 * @param fieldNames 	The indexed fields, sorted
+	 * @param term
 	 * @return
+	 * @throws IOException
 	 */
-	private Map<String, Integer> sortByComparator(Map<String, Integer> unsortMap) {
-
-		// Convert Map to List
-		List<Map.Entry<String, Integer>> list = new LinkedList<Map.Entry<String, Integer>>(unsortMap.entrySet());
-
-		// Sort list with comparator, to compare the Map values
-		Collections.sort(list, new Comparator<Map.Entry<String, Integer>>() {
-			public int compare(Map.Entry<String, Integer> o1,
-                               Map.Entry<String, Integer> o2) {
-				return (o2.getValue()).compareTo(o1.getValue());
+	private static boolean isInLaterField(IndexReader reader, List<String> fieldNames, Term term) throws IOException {
+		
+		for (String fieldName : fieldNames) {
+			if (fieldName.compareTo(term.field()) > 0 && reader.docFreq(new Term(fieldName, term.text())) > 0) {
+				return true;
 			}
-		});
-
-		// Convert sorted map back to a Map
-		Map<String, Integer> sortedMap = new LinkedHashMap<String, Integer>();
-		for (Iterator<Map.Entry<String, Integer>> it = list.iterator(); it.hasNext();) {
-			Map.Entry<String, Integer> entry = it.next();
-			sortedMap.put(entry.getKey(), entry.getValue());
 		}
-		
-		return sortedMap;
+		return false;
 		
 	}
 	
@@ -0,0 +1,112 @@
+package com.tutorialspoint.lucene;
+
+import java.util.Arrays;
+
+/**
+ * Records query latencies and summarizes their distribution (mean and percentiles).
+ * 
+ * @author amir
+ * 
+ */
+public class LatencyStats {
+
+	private String name; 			// Shown in the report
+	private long[] nanos; 			// Recorded latencies, in nanoseconds
+	private int count; 				// Number of recorded latencies
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 */
+	public LatencyStats(String name) {
+		
+		this.name = name;
+		nanos = new long[1024];
+		
+	}
+	
+	/**
+	 * Records a single latency.
+	 * 
+	 * @param latency
+	 */
+	public void record(long latency) {
+		
+		if (count == nanos.length) {
+			nanos = Arrays.copyOf(nanos, 2 * count);
+		}
+		nanos[count++] = latency;
+		
+	}
+	
+	/**
+	 * Adds all the latencies of another recorder (e.g. of another thread).
+	 * 
+	 * @param other
+	 */
+	public void merge(LatencyStats other) {
+		
+		for (int i = 0; i < other.count; i++) {
+			record(other.nanos[i]);
+		}
+		
+	}
+	
+	/**
+	 * Returns the number of recorded latencies.
+	 * 
+	 * @return
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the mean latency, in milliseconds.
+	 * 
+	 * @return
+	 */
+	public double getMean() {
+		
+		if (count == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += nanos[i];
+		}
+		return sum / 1e6 / count;
+		
+	}
+	
+	/**
+	 * Returns the given percentile (0-100) of the latencies, in milliseconds.
+	 * 
+	 * @param percentile
+	 * @return
+	 */
+	public double getPercentile(double percentile) {
+		
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(nanos, count);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, rank))] / 1e6;
+		
+	}
+	
+	/**
+	 * Prints the distribution: count, mean, p50, p90, p99 and max (in milliseconds).
+	 * 
+	 */
+	public void print() {
+		
+		System.out.printf("%s latency (ms): n=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f max=%.3f\n",
+				name, count, getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getPercentile(100));
+		
+	}
+	
+}
@@ -0,0 +1,358 @@
+package com.tutorialspoint.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
+
+/**
+ * Replays the query file against the index under load, and steps the load up to find the saturation point.
+ * 	- Open loop: queries arrive at a target rate (QPS), whether or not the previous ones are done.
+ * 	  Latency is measured from the intended arrival time, so queueing delay is included
+ * 	  (no coordinated omission).
+ * 	- Closed loop: N clients, each sending its next query when the previous one returns.
+ * 	  There is no configured interval between requests to correct for coordinated omission with,
+ * 	  so the latencies are reported uncorrected (they leave out the queueing delay).
+ * 
+ * Open loop multiplies the rate by 1.5 at every step, until the achieved throughput falls behind
+ * (less than 95% of the target) or p99 goes over the SLA. Closed loop doubles the clients
+ * until the throughput gains less than 5%.
+ * 
+ * @author amir
+ * 
+ */
+public class LoadTester {
+
+	/**
+	 * The result of a single load step.
+	 * 
+	 */
+	private static class Step {
+		double offered; 			// Target QPS (open loop) or number of clients (closed loop)
+		double achieved; 			// Achieved QPS
+		LatencyStats latency; 		// Latencies (from the intended arrival in open loop, uncorrected in closed loop)
+		int errors; 				// Queries that failed to parse
+	}
+	
+	private Analyzer analyzer; 				// The query analyzer
+	private String name; 					// The configuration's name
+	private String[] fields; 				// The searched fields
+	private List<QueryRecord> queries; 		// The query log to replay
+	private long stepNanos; 				// Duration of every load step
+	private double slaMillis; 				// p99 latency objective (open loop)
+	private int maxThreads; 				// Worker threads (open loop) / max clients (closed loop)
+	private QueryAnalysisCache analysisCache; 	// Parsed queries by text, shared by the workers (null if off)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param analyzer
+	 * @param name
+	 * @param fields
+	 * @param queries
+	 * @param stepSeconds
+	 * @param slaMillis
+	 * @param maxThreads
+	 */
+	public LoadTester(Analyzer analyzer, String name, String[] fields, List<QueryRecord> queries, int stepSeconds, double slaMillis, int maxThreads) {
+		
+		this.analyzer = analyzer;
+		this.name = name;
+		this.fields = fields;
+		this.queries = queries;
+		this.stepNanos = stepSeconds * 1000000000L;
+		this.slaMillis = slaMillis;
+		this.maxThreads = maxThreads;
+		
+	}
+	
+	/**
+	 * Serves the workers' parsed queries from the given cache.
+	 * 
+	 * @param analysisCache
+	 */
+	public void setAnalysisCache(QueryAnalysisCache analysisCache) {
+		this.analysisCache = analysisCache;
+	}
+	
+	/**
+	 * Opens the index directory with the given storage backend:
+	 * fs (platform default), mmap, nio, simple or ram (copied to the heap).
+	 * 
+	 * @param storage
+	 * @param indexDir
+	 * @return
+	 * @throws IOException
+	 */
+	public static Directory openDirectory(String storage, String indexDir) throws IOException {
+		
+		File path = new File(indexDir);
+		if (storage.equalsIgnoreCase("mmap")) {
+			return new MMapDirectory(path);
+		} else if (storage.equalsIgnoreCase("nio")) {
+			return new NIOFSDirectory(path);
+		} else if (storage.equalsIgnoreCase("simple")) {
+			return new SimpleFSDirectory(path);
+		} else if (storage.equalsIgnoreCase("ram")) {
+			return new RAMDirectory(FSDirectory.open(path));
+		}
+		return FSDirectory.open(path);
+		
+	}
+	
+	/**
+	 * Finds the saturation point of one configuration (index + storage backend).
+	 * 
+	 * @param indexDir
+	 * @param storage
+	 * @param mode
+	 * @param startQps
+	 * @throws IOException
+	 */
+	public void run(String indexDir, String storage, String mode, double startQps) throws IOException {
+		
+		String label = name + "/" + storage;
+		System.out.println("\nLoad test: " + label + ", " + queries.size() + " queries");
+		
+		Directory directory = openDirectory(storage, indexDir);
+		IndexReader reader = IndexReader.open(directory);
+		IndexSearcher indexSearcher = new IndexSearcher(reader);
+		
+		try {
+			
+			// Untimed warm-up pass
+			Searcher searcher = new Searcher(indexSearcher, analyzer, fields);
+			searcher.setAnalysisCache(analysisCache);
+			ResultBuffer scratch = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+			for (int i = 0; i < Math.min(queries.size(), 200); i++) {
+				try {
+					searcher.search(queries.get(i).text, scratch);
+				} catch (ParseException e) {
+					// Counted during the timed steps
+				}
+			}
+			
+			System.out.printf("%-20s %-7s %10s %10s %9s %9s %9s %9s\n",
+					"configuration", "mode", "offered", "achieved", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+			
+			if (mode.equalsIgnoreCase("open") || mode.equalsIgnoreCase("both")) {
+				
+				double qps = startQps;
+				double saturation = 0;
+				for (int i = 0; i < 30; i++) {
+					Step step = runOpenLoop(indexSearcher, qps);
+					print(label, "open", step);
+					if (step.achieved < 0.95 * qps || step.latency.getPercentile(99) > slaMillis) {
+						break;
+					}
+					saturation = qps;
+					qps *= 1.5;
+				}
+				System.out.printf("%s open-loop saturation: %.1f QPS (p99 <= %.0f ms)\n", label, saturation, slaMillis);
+				
+			}
+			
+			if (mode.equalsIgnoreCase("closed") || mode.equalsIgnoreCase("both")) {
+				
+				double best = 0;
+				int bestClients = 0;
+				for (int clients = 1; clients <= maxThreads; clients *= 2) {
+					Step step = runClosedLoop(indexSearcher, clients);
+					print(label, "closed", step);
+					if (step.achieved < best * 1.05) {
+						break;
+					}
+					best = step.achieved;
+					bestClients = clients;
+				}
+				System.out.printf("%s closed-loop saturation: %.1f QPS with %d clients\n", label, best, bestClients);
+				
+			}
+			
+		} finally {
+			indexSearcher.close();
+			reader.close();
+			directory.close();
+		}
+		
+	}
+	
+	/**
+	 * Runs a single open-loop step at the given rate.
+	 * 
+	 * @param indexSearcher
+	 * @param qps
+	 * @return
+	 */
+	private Step runOpenLoop(final IndexSearcher indexSearcher, double qps) {
+		
+		final double interval = 1e9 / qps;
+		final long start = System.nanoTime() + 10000000L;
+		final long end = start + stepNanos;
+		final AtomicLong ticket = new AtomicLong();
+		
+		Step step = runWorkers(indexSearcher, maxThreads, new Worker() {
+			public boolean next(Searcher searcher, ResultBuffer results, LatencyStats latency) throws IOException, ParseException {
+				
+				// Take the next arrival, and wait for its time
+				long i = ticket.getAndIncrement();
+				long intended = start + (long) (i * interval);
+				if (intended >= end) {
+					return false;
+				}
+				long now;
+				while ((now = System.nanoTime()) < intended) {
+					LockSupport.parkNanos(intended - now);
+				}
+				
+				// Latency counts from the intended arrival
+				searcher.search(queries.get((int) (i % queries.size())).text, results);
+				latency.record(System.nanoTime() - intended);
+				return true;
+				
+			}
+		});
+		
+		step.offered = qps;
+		step.achieved = step.latency.getCount() / ((System.nanoTime() - start) / 1e9);
+		return step;
+		
+	}
+	
+	/**
+	 * Runs a single closed-loop step with the given number of clients.
+	 * 
+	 * @param indexSearcher
+	 * @param clients
+	 * @return
+	 */
+	private Step runClosedLoop(IndexSearcher indexSearcher, int clients) {
+		
+		final long start = System.nanoTime();
+		final long end = start + stepNanos;
+		final AtomicLong ticket = new AtomicLong();
+		
+		Step step = runWorkers(indexSearcher, clients, new Worker() {
+			public boolean next(Searcher searcher, ResultBuffer results, LatencyStats latency) throws IOException, ParseException {
+				
+				long queryStart = System.nanoTime();
+				if (queryStart >= end) {
+					return false;
+				}
+				long i = ticket.getAndIncrement();
+				searcher.search(queries.get((int) (i % queries.size())).text, results);
+				latency.record(System.nanoTime() - queryStart);
+				return true;
+				
+			}
+		});
+		
+		step.offered = clients;
+		step.achieved = step.latency.getCount() / ((System.nanoTime() - start) / 1e9);
+		return step;
+		
+	}
+	
+	/**
+	 * The body of a worker thread: runs one query, returns false when the step is over.
+	 * 
+	 */
+	private interface Worker {
+		public boolean next(Searcher searcher, ResultBuffer results, LatencyStats latency) throws IOException, ParseException;
+	}
+	
+	/**
+	 * Runs the worker on the given number of threads (each with its own Searcher and buffer),
+	 * and merges their latencies.
+	 * 
+	 * @param indexSearcher
+	 * @param threads
+	 * @param worker
+	 * @return
+	 */
+	private Step runWorkers(final IndexSearcher indexSearcher, int threads, final Worker worker) {
+		
+		final LatencyStats[] latencies = new LatencyStats[threads];
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		
+		for (int t = 0; t < threads; t++) {
+			final LatencyStats latency = new LatencyStats("Load");
+			latencies[t] = latency;
+			workers[t] = new Thread(new Runnable() {
+				public void run() {
+					Searcher searcher = new Searcher(indexSearcher, analyzer, fields);
+					searcher.setAnalysisCache(analysisCache);
+					ResultBuffer results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+					try {
+						// Outside the timed queries (loaded once per reader, by the warm-up)
+						searcher.resolveDocIDs(results);
+					} catch (IOException e) {
+						errors.incrementAndGet();
+					}
+					while (true) {
+						try {
+							if (!worker.next(searcher, results, latency)) {
+								break;
+							}
+						} catch (ParseException e) {
+							errors.incrementAndGet();
+						} catch (IOException e) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			});
+			workers[t].start();
+		}
+		
+		// Wait for all the workers
+		for (Thread thread : workers) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		Step step = new Step();
+		step.latency = new LatencyStats("Load");
+		for (LatencyStats latency : latencies) {
+			step.latency.merge(latency);
+		}
+		step.errors = errors.get();
+		return step;
+		
+	}
+	
+	/**
+	 * Prints a single step.
+	 * 
+	 * @param label
+	 * @param mode
+	 * @param step
+	 */
+	private void print(String label, String mode, Step step) {
+		
+		System.out.printf("%-20s %-7s %10.1f %10.1f %9.2f %9.2f %9.2f %9.2f%s\n",
+				label, mode, step.offered, step.achieved,
+				step.latency.getPercentile(50), step.latency.getPercentile(99),
+				step.latency.getPercentile(99.9), step.latency.getPercentile(100),
+				step.errors > 0 ? " (" + step.errors + " errors)" : "");
+		
+	}
+	
+}
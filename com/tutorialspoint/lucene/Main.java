@@ -4,6 +4,8 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 
+import javax.management.JMException;
+
 import org.apache.lucene.queryParser.ParseException;
 
 /**
@@ -21,6 +23,7 @@ public class Main {
 		String truthFile 			= "";
 		String outputFile 			= "";
 		String retrievalAlgorithm 	= "";
+		Options options 			= new Options();
 		
 		// No parameterFile - use debug parameters
 		if (args.length == 0) {
@@ -55,6 +58,13 @@ public class Main {
 	            retrievalAlgorithm = getVal(inputStream);
 	            System.out.println("\t- retrievalAlgorithm = " + retrievalAlgorithm);
 	            
+	            // Read the optional parameters (any order)
+	            options = Options.read(inputStream);
+	            options.print();
+	            
+	            // The truth file is optional (enables benchmarking)
+	            truthFile = options.getString("truthFile", truthFile);
+	            
 	            System.out.println("The parameters have been read.");
 	            
 			} catch (IOException e) {
@@ -72,15 +82,54 @@ public class Main {
 		}
 		
 
+		// Export the live metrics, if asked to
+		MetricsServer metricsServer = new MetricsServer();
+		
+		// A failed run or a regression exits with 1, so scripts can gate on it
+		int exitCode = 0;
+
 		try {
 			
-			Experiment experiment = new Experiment(queryFile, docsFile, truthFile, outputFile, retrievalAlgorithm);
-			experiment.run();
+			if (options.has("metricsPort")) {
+				metricsServer.startHttp(options.getInt("metricsPort", 0));
+			}
+			if (options.getBoolean("metricsJmx", false)) {
+				metricsServer.startJmx();
+			}
+			
+			// Several collections in one process
+			if (options.has("collections")) {
+				if (new MultiCollection(retrievalAlgorithm, options).run() > 0) {
+					exitCode = 1;
+				}
+			} else {
+				
+				Experiment experiment = new Experiment(queryFile, docsFile, truthFile, outputFile, retrievalAlgorithm);
+				experiment.setOptions(options);
+				experiment.run();
+				
+				// Fail the run if it regressed compared with the baseline
+				if (experiment.getRegressions() > 0) {
+					exitCode = 1;
+				}
+				
+			}
 			
 		} catch (IOException e) {
 			e.printStackTrace();
+			exitCode = 1;
 		} catch (ParseException e) {
 			e.printStackTrace();
+			exitCode = 1;
+		} catch (JMException e) {
+			e.printStackTrace();
+			exitCode = 1;
+		} finally {
+			metricsServer.stop();
+		}
+		
+		if (exitCode != 0) {
+			System.exit(exitCode);
 		}
 
 	}
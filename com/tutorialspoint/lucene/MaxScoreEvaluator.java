@@ -0,0 +1,474 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Top-k evaluation of long disjunctive queries with dynamic pruning (MaxScore).
+ * 
+ * Every clause of the query gets an upper bound on its score contribution (see TermUpperBounds).
+ * The clauses are sorted by their bounds, and once the top-k heap is full, the smallest clauses
+ * whose bounds together can't beat the current k-th score become "non-essential":
+ * they no longer drive the iteration, and they are only advanced to documents that can still
+ * make it into the top-k. Documents that can't are skipped without being fully scored.
+ * 
+ * The scores are computed by Lucene's own clause scorers, and summed and coordinated the same way
+ * BooleanScorer does it, so the top-k (including ties, which go to the lower docID) is the same
+ * as IndexSearcher.search() would return.
+ * 
+ * @author amir
+ * 
+ */
+public class MaxScoreEvaluator {
+
+	private static final double SLACK = 1e-5; 		// Relative safety margin for float rounding in the bounds
+
+	private IndexSearcher indexSearcher; 			// The searcher we evaluate against
+	private TermUpperBounds upperBounds; 			// Per-term max(tf * norm)
+	private Similarity similarity; 					// For coord() and queryNorm()
+
+	private long postingsScored; 					// Term postings scored by the last query
+	private long postingsTotal; 					// Term postings an exhaustive evaluation of the last query would score
+	private int docsSkipped; 						// Candidate documents pruned in the last query
+	private boolean isTruncated; 					// The last query was stopped by its budget
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param indexSearcher
+	 * @param upperBounds
+	 */
+	public MaxScoreEvaluator(IndexSearcher indexSearcher, TermUpperBounds upperBounds) {
+
+		this.indexSearcher = indexSearcher;
+		this.upperBounds = upperBounds;
+		this.similarity = indexSearcher.getSimilarity();
+
+	}
+
+	/**
+	 * Returns the top n results of the given query.
+	 * Returns null if the query isn't a pure disjunction (the caller should search it normally).
+	 * 
+	 * Note: since pruned documents are never counted, totalHits is the number of documents
+	 * that were actually evaluated, not the total number of matching documents.
+	 * 
+	 * @param query
+	 * @param n
+	 * @return
+	 * @throws IOException
+	 */
+	public TopDocs search(Query query, int n) throws IOException {
+
+		return search(query, n, 0, 0);
+
+	}
+
+	/**
+	 * Same as search(), within a time budget and a work budget (documents scored), 0 for none.
+	 * A query over its budget returns the best of the documents scored so far, and isTruncated() is set,
+	 * the same way the budgeted collectors of Searcher cut an unpruned query.
+	 * 
+	 * @param query
+	 * @param n
+	 * @param budgetMillis
+	 * @param budgetDocs
+	 * @return
+	 * @throws IOException
+	 */
+	public TopDocs search(Query query, int n, long budgetMillis, long budgetDocs) throws IOException {
+
+		postingsScored = 0;
+		postingsTotal = 0;
+		docsSkipped = 0;
+		isTruncated = false;
+		long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1000000 : 0;
+		int candidates = 0;
+
+		// Only top-level disjunctions are pruned
+		query = indexSearcher.rewrite(query);
+		if (!isDisjunction(query)) {
+			return null;
+		}
+		BooleanQuery booleanQuery = (BooleanQuery) query;
+		BooleanClause[] clauses = booleanQuery.getClauses();
+		int numClauses = clauses.length;
+
+		// Create and normalize the clause weights
+		Weight[] weights = new Weight[numClauses];
+		float norm = normalizeClauses(indexSearcher, booleanQuery, weights);
+
+		// Upper bound of every clause
+		final float[] bounds = new float[numClauses];
+		for (int i = 0; i < numClauses; i++) {
+			bounds[i] = upperBound(clauses[i].getQuery(), norm);
+		}
+
+		// Sort the clauses by their bounds, ascending
+		Integer[] order = new Integer[numClauses];
+		for (int i = 0; i < numClauses; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Float.compare(bounds[a], bounds[b]);
+			}
+		});
+		int[] sorted = new int[numClauses];
+		double[] cumulative = new double[numClauses]; 		// cumulative[j] = sum of the j+1 smallest bounds
+		double running = 0;
+		for (int j = 0; j < numClauses; j++) {
+			sorted[j] = order[j];
+			running += bounds[sorted[j]];
+			cumulative[j] = running;
+		}
+
+		// Coordination factors (BooleanWeight counts all the clauses in maxCoord)
+		float[] coordFactors = new float[numClauses + 1];
+		for (int i = 0; i <= numClauses; i++) {
+			coordFactors[i] = booleanQuery.isCoordDisabled() ? 1.0f : similarity.coord(i, numClauses);
+		}
+
+		// The top-k heap, smallest (worst) at the head
+		PriorityQueue<ScoreDoc> heap = new PriorityQueue<ScoreDoc>(n, new Comparator<ScoreDoc>() {
+			public int compare(ScoreDoc a, ScoreDoc b) {
+				if (a.score != b.score) {
+					return Float.compare(a.score, b.score);
+				}
+				return b.doc - a.doc;
+			}
+		});
+		float threshold = Float.NEGATIVE_INFINITY;
+		int firstEssential = 0;
+		int totalHits = 0;
+
+		float[] contributions = new float[numClauses];
+		boolean[] matched = new boolean[numClauses];
+
+		// Evaluate segment by segment
+		IndexReader[] subReaders = indexSearcher.getIndexReader().getSequentialSubReaders();
+		if (subReaders == null) {
+			subReaders = new IndexReader[] {indexSearcher.getIndexReader()};
+		}
+		int[] docStarts = new int[subReaders.length];
+		for (int s = 1; s < subReaders.length; s++) {
+			docStarts[s] = docStarts[s - 1] + subReaders[s - 1].maxDoc();
+		}
+		for (int s = 0; s < subReaders.length && !isTruncated; s++) {
+
+			Scorer[] scorers = new Scorer[numClauses];
+			for (int i = 0; i < numClauses; i++) {
+				scorers[i] = weights[i].scorer(subReaders[s], true, false);
+			}
+
+			// Position the essential scorers on their first document
+			for (int j = firstEssential; j < numClauses; j++) {
+				Scorer scorer = scorers[sorted[j]];
+				if (scorer != null) {
+					scorer.nextDoc();
+				}
+			}
+
+			while (true) {
+
+				// The next candidate is the smallest docID among the essential scorers
+				int doc = Scorer.NO_MORE_DOCS;
+				for (int j = firstEssential; j < numClauses; j++) {
+					Scorer scorer = scorers[sorted[j]];
+					if (scorer != null && scorer.docID() < doc) {
+						doc = scorer.docID();
+					}
+				}
+				if (doc == Scorer.NO_MORE_DOCS) {
+					break;
+				}
+
+				// Check the clock every few candidates
+				if (deadline > 0 && (++candidates & 0xFF) == 0 && System.nanoTime() > deadline) {
+					isTruncated = true;
+					break;
+				}
+
+				// Score the essential clauses that match the candidate
+				float partial = 0;
+				int overlap = 0;
+				Arrays.fill(matched, false);
+				for (int j = firstEssential; j < numClauses; j++) {
+					int i = sorted[j];
+					Scorer scorer = scorers[i];
+					if (scorer != null && scorer.docID() == doc) {
+						contributions[i] = scorer.score();
+						matched[i] = true;
+						partial += contributions[i];
+						overlap++;
+						postingsScored += termsScored(clauses[i].getQuery(), scorer);
+						scorer.nextDoc();
+					}
+				}
+
+				// Add the non-essential clauses, largest bound first, as long as the document can still make it
+				boolean pruned = false;
+				for (int j = firstEssential - 1; j >= 0; j--) {
+					double bound = (partial + cumulative[j]) * coordFactors[overlap + j + 1];
+					if (!canEnter(bound, threshold)) {
+						pruned = true;
+						break;
+					}
+					int i = sorted[j];
+					Scorer scorer = scorers[i];
+					if (scorer == null) {
+						continue;
+					}
+					if (scorer.docID() < doc) {
+						scorer.advance(doc);
+					}
+					if (scorer.docID() == doc) {
+						contributions[i] = scorer.score();
+						matched[i] = true;
+						partial += contributions[i];
+						overlap++;
+						postingsScored += termsScored(clauses[i].getQuery(), scorer);
+					}
+				}
+				if (pruned) {
+					docsSkipped++;
+					continue;
+				}
+
+				// The exact score: BooleanScorer sums its sub-scorers in reverse clause order
+				float score = 0;
+				for (int i = numClauses - 1; i >= 0; i--) {
+					if (matched[i]) {
+						score += contributions[i];
+					}
+				}
+				score *= coordFactors[overlap];
+				if (budgetDocs > 0 && totalHits == budgetDocs) {
+					isTruncated = true;
+					break;
+				}
+				totalHits++;
+
+				// Collect it (documents come in increasing docID order, so ties never enter)
+				int globalDoc = docStarts[s] + doc;
+				if (heap.size() < n) {
+					heap.add(new ScoreDoc(globalDoc, score));
+				} else if (score > threshold) {
+					heap.poll();
+					heap.add(new ScoreDoc(globalDoc, score));
+				} else {
+					continue;
+				}
+
+				// Once the heap is full, tighten the threshold and move clauses to the non-essential set
+				if (heap.size() == n) {
+					threshold = heap.peek().score;
+					while (firstEssential < numClauses
+							&& !canEnter(cumulative[firstEssential] * coordFactors[firstEssential + 1], threshold)) {
+						firstEssential++;
+					}
+				}
+
+			}
+
+		}
+
+		// Pop the heap into a descending array
+		ScoreDoc[] scoreDocs = new ScoreDoc[heap.size()];
+		for (int i = scoreDocs.length - 1; i >= 0; i--) {
+			scoreDocs[i] = heap.poll();
+		}
+		float maxScore = scoreDocs.length == 0 ? Float.NaN : scoreDocs[0].score;
+
+		return new TopDocs(totalHits, scoreDocs, maxScore);
+
+	}
+
+	/**
+	 * Returns the number of term postings a clause's scorer has just scored, on the same unit as postingsTotal:
+	 * 1 for a term, the matching terms for a nested disjunction (BooleanScorer2 counts its matching clauses
+	 * in freq(), once score() has run), and 0 for the clauses that can't be bounded (not in postingsTotal).
+	 * 
+	 * @param query
+	 * @param scorer
+	 * @return
+	 * @throws IOException
+	 */
+	private static int termsScored(Query query, Scorer scorer) throws IOException {
+		
+		if (query instanceof TermQuery) {
+			return 1;
+		}
+		if (isDisjunction(query)) {
+			return (int) scorer.freq();
+		}
+		return 0;
+		
+	}
+	
+	/**
+	 * Checks if a document bounded by the given score can still enter the top-k.
+	 * Ties lose (the document in the heap has a lower docID), so the bound must beat the threshold.
+	 * 
+	 * @param bound
+	 * @param threshold
+	 * @return
+	 */
+	private boolean canEnter(double bound, float threshold) {
+		return bound * (1 + SLACK) >= threshold;
+	}
+
+	/**
+	 * Creates the weights of the query's clauses and normalizes them,
+	 * the same way the searcher normalizes the whole query.
+	 * Returns the norm the clauses were normalized with.
+	 * 
+	 * @param indexSearcher
+	 * @param booleanQuery
+	 * @param weights
+	 * @return
+	 * @throws IOException
+	 */
+	static float normalizeClauses(IndexSearcher indexSearcher, BooleanQuery booleanQuery, Weight[] weights) throws IOException {
+		
+		BooleanClause[] clauses = booleanQuery.getClauses();
+		
+		// Sum of squared weights (BooleanWeight.sumOfSquaredWeights())
+		float sum = 0;
+		for (int i = 0; i < clauses.length; i++) {
+			weights[i] = clauses[i].getQuery().createWeight(indexSearcher);
+			sum += weights[i].sumOfSquaredWeights();
+		}
+		sum *= booleanQuery.getBoost() * booleanQuery.getBoost();
+		
+		// Query norm (Searcher.createNormalizedWeight())
+		float norm = indexSearcher.getSimilarity().queryNorm(sum);
+		if (Float.isInfinite(norm) || Float.isNaN(norm)) {
+			norm = 1.0f;
+		}
+		
+		// BooleanWeight.normalize()
+		norm *= booleanQuery.getBoost();
+		for (int i = 0; i < clauses.length; i++) {
+			weights[i].normalize(norm);
+		}
+		
+		return norm;
+		
+	}
+	
+	/**
+	 * Checks that the query is a BooleanQuery of optional clauses only.
+	 * 
+	 * @param query
+	 * @return
+	 */
+	static boolean isDisjunction(Query query) {
+
+		if (!(query instanceof BooleanQuery)) {
+			return false;
+		}
+		BooleanQuery booleanQuery = (BooleanQuery) query;
+		if (booleanQuery.getMinimumNumberShouldMatch() > 0) {
+			return false;
+		}
+		for (BooleanClause clause : booleanQuery.getClauses()) {
+			if (clause.getOccur() != BooleanClause.Occur.SHOULD) {
+				return false;
+			}
+		}
+		return true;
+
+	}
+
+	/**
+	 * Returns an upper bound on the score of a clause, normalized with the given query norm.
+	 * Term queries use the stored max(tf * norm); nested disjunctions (advanced mode generates
+	 * title:t body:t for every term) sum their terms, since coord() never exceeds 1.
+	 * Anything else can't be bounded, and is always essential.
+	 * 
+	 * Also adds the clause's postings to the exhaustive postings count.
+	 * 
+	 * @param query
+	 * @param norm
+	 * @return
+	 * @throws IOException
+	 */
+	private float upperBound(Query query, float norm) throws IOException {
+
+		if (query instanceof TermQuery) {
+
+			TermQuery termQuery = (TermQuery) query;
+			Weight weight = termQuery.createWeight(indexSearcher);
+			weight.sumOfSquaredWeights();
+			weight.normalize(norm);
+			postingsTotal += indexSearcher.docFreq(termQuery.getTerm());
+			return weight.getValue() * upperBounds.get(termQuery.getTerm());
+
+		}
+
+		if (isDisjunction(query)) {
+
+			float bound = 0;
+			for (BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+				bound += upperBound(clause.getQuery(), norm * query.getBoost());
+			}
+			return bound;
+
+		}
+
+		return Float.POSITIVE_INFINITY;
+
+	}
+
+	/**
+	 * Returns the number of term postings scored by the last query.
+	 * 
+	 * @return
+	 */
+	public long getPostingsScored() {
+		return postingsScored;
+	}
+
+	/**
+	 * Returns the number of term postings an exhaustive evaluation of the last query would score.
+	 * 
+	 * @return
+	 */
+	public long getPostingsTotal() {
+		return postingsTotal;
+	}
+
+	/**
+	 * Checks if the last query was stopped by its budget (partial results).
+	 * 
+	 * @return
+	 */
+	public boolean isTruncated() {
+		return isTruncated;
+	}
+
+	/**
+	 * Returns the number of candidate documents pruned by the last query.
+	 * 
+	 * @return
+	 */
+	public int getDocsSkipped() {
+		return docsSkipped;
+	}
+
+}
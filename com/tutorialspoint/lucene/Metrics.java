@@ -0,0 +1,287 @@
+package com.tutorialspoint.lucene;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The live metrics of the process, for watching long indexing and query runs
+ * (exported by MetricsServer, in the Prometheus text format and over JMX).
+ * The hot paths update them with single atomic operations, no locks.
+ * The metrics are process-wide: with several collections (see MultiCollection), they add up.
+ * 
+ * @author amir
+ * 
+ */
+public final class Metrics {
+
+	/**
+	 * A metric exported under a name, with an optional label set ("cache=\"result\"").
+	 * 
+	 */
+	public static abstract class Metric {
+		
+		final String name; 			// Metric name
+		final String labels; 		// Labels, without the braces (null if none)
+		final String help; 			// Description
+		final String type; 			// Prometheus type
+		
+		Metric(String name, String labels, String help, String type) {
+			this.name = name;
+			this.labels = labels;
+			this.help = help;
+			this.type = type;
+			METRICS.add(this);
+		}
+		
+		/**
+		 * Returns the name with the labels (plus the extra label, if any).
+		 * 
+		 */
+		String series(String suffix, String extraLabel) {
+			String all = labels == null ? extraLabel : extraLabel == null ? labels : labels + "," + extraLabel;
+			return name + suffix + (all == null ? "" : "{" + all + "}");
+		}
+		
+		/**
+		 * Returns the name as a JMX attribute ("lucene_cache_hits_total.result").
+		 * 
+		 */
+		String attribute() {
+			return labels == null ? name : name + "." + labels.substring(labels.indexOf('"') + 1, labels.lastIndexOf('"'));
+		}
+		
+		abstract void write(StringBuilder out);
+		
+		abstract double value();
+		
+	}
+	
+	/**
+	 * A value that only goes up.
+	 * 
+	 */
+	public static final class Counter extends Metric {
+		
+		private final AtomicLong count = new AtomicLong();
+		
+		Counter(String name, String labels, String help) {
+			super(name, labels, help, "counter");
+		}
+		
+		public void inc() {
+			count.incrementAndGet();
+		}
+		
+		public void add(long n) {
+			count.addAndGet(n);
+		}
+		
+		public long get() {
+			return count.get();
+		}
+		
+		void write(StringBuilder out) {
+			out.append(series("", null)).append(' ').append(count.get()).append('\n');
+		}
+		
+		double value() {
+			return count.get();
+		}
+		
+	}
+	
+	/**
+	 * A value that goes up and down.
+	 * 
+	 */
+	public static final class Gauge extends Metric {
+		
+		private final AtomicLong value = new AtomicLong();
+		
+		Gauge(String name, String labels, String help) {
+			super(name, labels, help, "gauge");
+		}
+		
+		public void inc() {
+			value.incrementAndGet();
+		}
+		
+		public void dec() {
+			value.decrementAndGet();
+		}
+		
+		void write(StringBuilder out) {
+			out.append(series("", null)).append(' ').append(value.get()).append('\n');
+		}
+		
+		double value() {
+			return value.get();
+		}
+		
+	}
+	
+	/**
+	 * The heap usage, read when exported.
+	 * 
+	 */
+	private static final class HeapGauge extends Metric {
+		
+		private final int part; 	// 0 = used, 1 = committed, 2 = max
+		
+		HeapGauge(String name, String help, int part) {
+			super(name, null, help, "gauge");
+			this.part = part;
+		}
+		
+		void write(StringBuilder out) {
+			out.append(series("", null)).append(' ').append((long) value()).append('\n');
+		}
+		
+		double value() {
+			MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+			return part == 0 ? heap.getUsed() : part == 1 ? heap.getCommitted() : heap.getMax();
+		}
+		
+	}
+	
+	/**
+	 * Latencies in fixed buckets (in seconds, as Prometheus expects).
+	 * The buckets are counted separately, and accumulated when exported.
+	 * 
+	 */
+	public static final class Histogram extends Metric {
+		
+		private static final double[] BOUNDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+												0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+		private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+		static {
+			for (int i = 0; i < BOUNDS.length; i++) {
+				BOUND_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+			}
+		}
+		
+		private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1); 	// Last = +Inf
+		private final AtomicLong sumNanos = new AtomicLong();
+		
+		Histogram(String name, String labels, String help) {
+			super(name, labels, help, "histogram");
+		}
+		
+		/**
+		 * Records a latency.
+		 * 
+		 * @param nanos
+		 */
+		public void record(long nanos) {
+			int i = 0;
+			while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) {
+				i++;
+			}
+			buckets.incrementAndGet(i);
+			sumNanos.addAndGet(nanos);
+		}
+		
+		void write(StringBuilder out) {
+			long cumulative = 0;
+			for (int i = 0; i <= BOUNDS.length; i++) {
+				cumulative += buckets.get(i);
+				String le = i < BOUNDS.length ? Double.toString(BOUNDS[i]) : "+Inf";
+				out.append(series("_bucket", "le=\"" + le + "\"")).append(' ').append(cumulative).append('\n');
+			}
+			out.append(series("_sum", null)).append(' ').append(sumNanos.get() / 1e9).append('\n');
+			out.append(series("_count", null)).append(' ').append(cumulative).append('\n');
+		}
+		
+		/**
+		 * Returns the mean latency in milliseconds (the JMX attribute).
+		 * 
+		 */
+		double value() {
+			long count = 0;
+			for (int i = 0; i <= BOUNDS.length; i++) {
+				count += buckets.get(i);
+			}
+			return count == 0 ? 0 : sumNanos.get() / 1e6 / count;
+		}
+		
+	}
+	
+	// All the metrics, in export order (declared before the metrics, which add themselves)
+	private static final List<Metric> METRICS = new ArrayList<Metric>();
+	
+	// Indexing
+	public static final Counter DOCS_INDEXED = new Counter("lucene_docs_indexed_total", null,
+			"Documents added to the index");
+	public static final Counter CHARS_PARSED = new Counter("lucene_docs_parsed_chars_total", null,
+			"Characters read from the docs file");
+	public static final Histogram ADD_LATENCY = new Histogram("lucene_add_document_seconds", null,
+			"Latency of IndexWriter.addDocument(), including flushes");
+	
+	// Queries
+	public static final Counter QUERIES_COMPLETED = new Counter("lucene_queries_completed_total", null,
+			"Queries searched to completion (or to their budget)");
+	public static final Gauge QUERIES_IN_FLIGHT = new Gauge("lucene_queries_in_flight", null,
+			"Queries being searched");
+	public static final Histogram QUERY_LATENCY = new Histogram("lucene_query_seconds", null,
+			"Latency of a search, including parsing and feedback");
+	
+	// Caches
+	public static final Counter RESULT_CACHE_HITS = new Counter("lucene_cache_hits_total", "cache=\"result\"",
+			"Lookups served from the cache");
+	public static final Counter ANALYSIS_CACHE_HITS = new Counter("lucene_cache_hits_total", "cache=\"analysis\"",
+			"Lookups served from the cache");
+	public static final Counter RESULT_CACHE_MISSES = new Counter("lucene_cache_misses_total", "cache=\"result\"",
+			"Lookups that weren't in the cache");
+	public static final Counter ANALYSIS_CACHE_MISSES = new Counter("lucene_cache_misses_total", "cache=\"analysis\"",
+			"Lookups that weren't in the cache");
+	
+	// Heap
+	static {
+		new HeapGauge("jvm_heap_used_bytes", "Heap in use", 0);
+		new HeapGauge("jvm_heap_committed_bytes", "Heap committed by the JVM", 1);
+		new HeapGauge("jvm_heap_max_bytes", "Maximum heap", 2);
+	}
+	
+	/**
+	 * Not instantiable.
+	 * 
+	 */
+	private Metrics() {
+	}
+	
+	/**
+	 * Returns all the metrics, in export order.
+	 * 
+	 * @return
+	 */
+	static List<Metric> getAll() {
+		return METRICS;
+	}
+	
+	/**
+	 * Writes all the metrics in the Prometheus text format (version 0.0.4).
+	 * The series of a name are consecutive, under a single HELP/TYPE header.
+	 * 
+	 * @return
+	 */
+	public static String toPrometheus() {
+		
+		StringBuilder out = new StringBuilder();
+		String lastName = null;
+		for (Metric metric : METRICS) {
+			if (!metric.name.equals(lastName)) {
+				out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+				out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+				lastName = metric.name;
+			}
+			metric.write(out);
+		}
+		return out.toString();
+		
+	}
+	
+}
@@ -0,0 +1,173 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exports the Metrics while a run is going:
+ * 	- Over HTTP, at http://127.0.0.1:<port>/metrics, in the Prometheus text format
+ * 	- Over JMX, as the read-only attributes of the "com.tutorialspoint.lucene:type=Metrics" MBean
+ * The endpoint only listens on the loopback interface, and is served by a single daemon thread,
+ * so a scrape never competes with the run for more than one core.
+ * 
+ * @author amir
+ * 
+ */
+public class MetricsServer {
+
+	/**
+	 * The metrics as JMX attributes (histograms as their mean, in milliseconds).
+	 * 
+	 */
+	private static class MetricsMBean implements DynamicMBean {
+		
+		private Metrics.Metric find(String attribute) throws AttributeNotFoundException {
+			for (Metrics.Metric metric : Metrics.getAll()) {
+				if (metric.attribute().equals(attribute)) {
+					return metric;
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+		
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			return Double.valueOf(find(attribute).value());
+		}
+		
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					list.add(new Attribute(attribute, getAttribute(attribute)));
+				} catch (AttributeNotFoundException e) {
+					// Skipped, as the interface expects
+				}
+			}
+			return list;
+		}
+		
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Read-only: " + attribute.getName());
+		}
+		
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+		
+		public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+		
+		public MBeanInfo getMBeanInfo() {
+			List<Metrics.Metric> metrics = Metrics.getAll();
+			MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[metrics.size()];
+			for (int i = 0; i < attributes.length; i++) {
+				Metrics.Metric metric = metrics.get(i);
+				attributes[i] = new MBeanAttributeInfo(metric.attribute(), "java.lang.Double",
+						metric.help, true, false, false);
+			}
+			return new MBeanInfo(getClass().getName(), "Live metrics of the run", attributes, null, null, null);
+		}
+		
+	}
+	
+	private static final String OBJECT_NAME = "com.tutorialspoint.lucene:type=Metrics";
+	
+	private HttpServer server; 			// The HTTP endpoint (null if off)
+	private ExecutorService executor; 	// Serves the scrapes
+	private ObjectName objectName; 		// The registered MBean (null if off)
+	
+	/**
+	 * Starts the HTTP endpoint on the given port.
+	 * 
+	 * @param port
+	 * @throws IOException
+	 */
+	public void startHttp(int port) throws IOException {
+		
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = Metrics.toPrometheus().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		
+		// A daemon thread, so an unstopped server never keeps the process alive
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "metrics-http");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		
+		System.out.println("Metrics at http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+		
+	}
+	
+	/**
+	 * Registers the metrics MBean with the platform MBean server.
+	 * 
+	 * @throws JMException
+	 */
+	public void startJmx() throws JMException {
+		
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		objectName = new ObjectName(OBJECT_NAME);
+		mbeanServer.registerMBean(new MetricsMBean(), objectName);
+		
+		System.out.println("Metrics registered over JMX as '" + OBJECT_NAME + "'");
+		
+	}
+	
+	/**
+	 * Stops the HTTP endpoint and unregisters the MBean.
+	 * 
+	 */
+	public void stop() {
+		
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+			objectName = null;
+		}
+		
+	}
+	
+}
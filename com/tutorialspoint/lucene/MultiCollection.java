@@ -0,0 +1,368 @@
+package com.tutorialspoint.lucene;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the experiment on several collections in one process.
+ * Every collection builds its own index and runs its own queries, against its own (warmed up) searcher,
+ * on a shared budget of collectionThreads threads: a collection takes one thread, plus its merge threads
+ * while its index is built (none with index.mergeScheduler=serial, the default here, where merges run
+ * in the indexing thread).
+ * 
+ * The heap and GC figures are process-wide, so they're only reported for the whole process
+ * (in the consolidated report), never per collection (see PhaseProfiler).
+ * 
+ * The collections are listed in the optional parameters, and configured with "collection.<name>.*" keys,
+ * which override the shared options for that collection:
+ * 	- collections=name1,name2,... 			The collections
+ * 	- collectionThreads=N 					The shared thread budget (default: number of processors)
+ * 	- collection.<name>.queryFile=path 		The collection's queries (required)
+ * 	- collection.<name>.docsFile=path 		The collection's documents (required)
+ * 	- collection.<name>.truthFile=path 		The collection's truth (default: none)
+ * 	- collection.<name>.outputFile=path 	The collection's run (default: <name>_output.txt)
+ * 	- collection.<name>.indexDir=path 		The collection's index (default: _index_<name>)
+ * 	- collection.<name>.logFile=path 		The collection's log (default: <outputFile>.log)
+ * 	- collection.<name>.retrievalAlgorithm 	basic/advanced (default: the shared one)
+ * 	- collection.<name>.<option>=value 		Any other option, for this collection only
+ * 
+ * The collections print to their own log files (the console would interleave them),
+ * and a consolidated report of all the collections is printed at the end,
+ * and saved to multiReportFile if given.
+ * 
+ * @author amir
+ * 
+ */
+public class MultiCollection {
+
+	/**
+	 * Routes the console output of every thread to its collection's log,
+	 * or to the console for the threads of no collection.
+	 */
+	private static class ThreadRouter extends OutputStream {
+		
+		private PrintStream console; 						// The original console
+		private InheritableThreadLocal<PrintStream> log; 	// The current thread's log (inherited by its merge threads)
+		
+		ThreadRouter(PrintStream console) {
+			this.console = console;
+			log = new InheritableThreadLocal<PrintStream>();
+		}
+		
+		private PrintStream target() {
+			PrintStream target = log.get();
+			return target == null ? console : target;
+		}
+		
+		@Override
+		public void write(int b) {
+			target().write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int offset, int length) {
+			target().write(b, offset, length);
+		}
+		
+		@Override
+		public void flush() {
+			target().flush();
+		}
+		
+	}
+	
+	/**
+	 * A single collection and its results.
+	 */
+	private static class Collection {
+		String name; 			// As listed in the collections option
+		String logFile; 		// Where its output goes
+		Experiment experiment; 	// Its experiment
+		int mergeThreads; 		// Merge threads of its index build (0 = merges in the indexing thread)
+		long indexMillis; 		// Wall time of its index build
+		long queryMillis; 		// Wall time of its query run
+		RunReport report; 		// Its measurements (null if it failed)
+		String error; 			// Why it failed (null if it didn't)
+	}
+	
+	private String retrievalAlgorithm; 		// The shared retrieval algorithm
+	private Options options; 				// The shared options
+	private List<Collection> collections; 	// The collections
+	private int threads; 					// The shared thread budget
+	private Semaphore budget; 				// The threads left in the budget
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param retrievalAlgorithm
+	 * @param options
+	 */
+	public MultiCollection(String retrievalAlgorithm, Options options) {
+		
+		this.retrievalAlgorithm = retrievalAlgorithm;
+		this.options = options;
+		threads = options.getInt("collectionThreads", Runtime.getRuntime().availableProcessors());
+		budget = new Semaphore(threads);
+		collections = new ArrayList<Collection>();
+		
+	}
+	
+	/**
+	 * Returns the options of a collection: the shared ones, overridden by its "collection.<name>.*" keys.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	private Options getOptions(String name) {
+		
+		Options collectionOptions = new Options();
+		String prefix = "collection." + name + ".";
+		for (String key : options.names()) {
+			if (!key.startsWith("collection")) {
+				collectionOptions.set(key, options.getString(key, null));
+			}
+		}
+		for (String key : options.names()) {
+			if (key.startsWith(prefix)) {
+				collectionOptions.set(key.substring(prefix.length()), options.getString(key, null));
+			}
+		}
+		
+		// Files that must not be shared between the collections
+		if (!collectionOptions.has("outputFile")) {
+			collectionOptions.set("outputFile", name + "_output.txt");
+		}
+		if (!collectionOptions.has("indexDir")) {
+			collectionOptions.set("indexDir", "_index_" + name);
+		}
+		if (!options.has(prefix + "baselineFile")) {
+			collectionOptions.set("baselineFile", collectionOptions.getString("baselineFile", "baseline.txt") + "." + name);
+		}
+		
+		// Every collection is searched warm, unless told otherwise
+		if (!collectionOptions.has("warmup")) {
+			collectionOptions.set("warmup", "true");
+		}
+		
+		// Merges in the collection's own thread, unless told otherwise (then its merge threads count in the budget)
+		if (!collectionOptions.has("index.mergeScheduler")) {
+			collectionOptions.set("index.mergeScheduler", "serial");
+		}
+		
+		// The GC and heap figures are the whole process's
+		collectionOptions.set("sharedProcess", "true");
+		
+		return collectionOptions;
+		
+	}
+	
+	/**
+	 * Runs all the collections, and prints the consolidated report.
+	 * Returns the total number of regressions (compared with the baselines).
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public int run() throws IOException {
+		
+		// Set up the collections
+		for (String name : options.getString("collections", "").split(",")) {
+			
+			name = name.trim();
+			if (name.length() == 0) {
+				continue;
+			}
+			Options collectionOptions = getOptions(name);
+			String queryFile = collectionOptions.getString("queryFile", null);
+			String docsFile = collectionOptions.getString("docsFile", null);
+			if (queryFile == null || docsFile == null) {
+				System.out.println("Collection '" + name + "' needs collection." + name + ".queryFile and collection." + name + ".docsFile, skipped.");
+				continue;
+			}
+			
+			Collection collection = new Collection();
+			collection.name = name;
+			String outputFile = collectionOptions.getString("outputFile", null);
+			collection.logFile = collectionOptions.getString("logFile", outputFile + ".log");
+			collection.experiment = new Experiment(queryFile, docsFile,
+												   collectionOptions.getString("truthFile", ""),
+												   outputFile,
+												   collectionOptions.getString("retrievalAlgorithm", retrievalAlgorithm));
+			collection.experiment.setOptions(collectionOptions);
+			collection.mergeThreads = Math.min(threads - 1, new IndexProfile(collectionOptions).getMergeThreads());
+			collections.add(collection);
+			
+		}
+		
+		System.out.println("\nRunning " + collections.size() + " collections on " + threads + " threads...");
+		
+		// Route the console to the collection logs
+		PrintStream console = System.out;
+		final ThreadRouter router = new ThreadRouter(console);
+		System.setOut(new PrintStream(router, true));
+		
+		PhaseProfiler process = new PhaseProfiler(false);
+		long startGcCount = process.gcCount();
+		long startGcMillis = process.gcMillis();
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Collection collection : collections) {
+				futures.add(pool.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						run(collection, router);
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					// Recorded in the collection
+				}
+			}
+			
+		} finally {
+			pool.shutdown();
+			System.setOut(console);
+		}
+		long totalMillis = (System.nanoTime() - start) / 1000000;
+		
+		// The process-wide figures
+		RunReport processReport = new RunReport();
+		processReport.put("process.memory.peakHeap.MB", process.getPeakHeapBytes() / 1048576.0);
+		processReport.put("process.gc.count", process.gcCount() - startGcCount);
+		processReport.put("process.gc.ms", process.gcMillis() - startGcMillis);
+		
+		return report(totalMillis, processReport);
+		
+	}
+	
+	/**
+	 * Builds the index and runs the queries of a single collection, in a pool thread,
+	 * taking its threads from the budget.
+	 * 
+	 * @param collection
+	 * @param router
+	 * @throws IOException
+	 */
+	private void run(Collection collection, ThreadRouter router) throws IOException {
+		
+		PrintStream log = new PrintStream(new FileOutputStream(collection.logFile), true);
+		router.log.set(log);
+		int held = 0;
+		
+		try {
+			
+			// The indexing thread and its merge threads (released once the index is closed)
+			budget.acquire(1 + collection.mergeThreads);
+			held = 1 + collection.mergeThreads;
+			
+			long start = System.nanoTime();
+			collection.experiment.buildIndex();
+			collection.indexMillis = (System.nanoTime() - start) / 1000000;
+			budget.release(collection.mergeThreads);
+			held = 1;
+			
+			start = System.nanoTime();
+			collection.experiment.runQueries();
+			collection.queryMillis = (System.nanoTime() - start) / 1000000;
+			
+			collection.report = collection.experiment.createReport();
+			
+		} catch (Exception e) {
+			collection.error = e.toString();
+			e.printStackTrace(log);
+		} finally {
+			budget.release(held);
+			router.log.remove();
+			log.close();
+		}
+		
+	}
+	
+	/**
+	 * Prints the consolidated report, saves it if asked to, and returns the total number of regressions
+	 * (a failed collection counts as one).
+	 * 
+	 * @param totalMillis
+	 * @param processReport
+	 * @return
+	 * @throws IOException
+	 */
+	private int report(long totalMillis, RunReport processReport) throws IOException {
+		
+		int regressions = 0;
+		RunReport consolidated = new RunReport();
+		
+		System.out.println("\nCollections report (" + threads + " threads, " + totalMillis + " ms in total):");
+		System.out.printf("Process: peak heap = %.1f MB, %.0f GCs (%.0f ms)\n",
+				processReport.get("process.memory.peakHeap.MB"), processReport.get("process.gc.count"), processReport.get("process.gc.ms"));
+		System.out.printf("%-16s %10s %10s %10s %10s %10s %8s  %s\n",
+				"collection", "index(ms)", "query(ms)", "queries/s", "p50(ms)", "p99(ms)", "MAP", "log");
+		for (Collection collection : collections) {
+			
+			if (collection.report == null) {
+				System.out.printf("%-16s failed: %s (see %s)\n", collection.name, collection.error, collection.logFile);
+				regressions++;
+				continue;
+			}
+			
+			RunReport report = collection.report;
+			System.out.printf("%-16s %10d %10d %10s %10s %10s %8s  %s\n", collection.name,
+					collection.indexMillis, collection.queryMillis,
+					format(report.get("throughput.queries.perSec"), "%.1f"),
+					format(report.get("time.query.p50.ms"), "%.3f"),
+					format(report.get("time.query.p99.ms"), "%.3f"),
+					format(report.get("quality.MAP"), "%.4f"),
+					collection.logFile);
+			
+			for (String name : report.names()) {
+				consolidated.put(collection.name + "." + name, report.get(name));
+			}
+			regressions += collection.experiment.getRegressions();
+			
+		}
+		consolidated.put("time.total.ms", totalMillis);
+		for (String name : processReport.names()) {
+			consolidated.put(name, processReport.get(name));
+		}
+		
+		String reportFile = options.getString("multiReportFile", null);
+		if (reportFile != null) {
+			consolidated.save(reportFile);
+			System.out.println("\nConsolidated report saved to '" + reportFile + "'.");
+		}
+		
+		return regressions;
+		
+	}
+	
+	/**
+	 * Formats an optional metric.
+	 * 
+	 * @param value
+	 * @param format
+	 * @return
+	 */
+	private static String format(Double value, String format) {
+		return value == null ? "-" : String.format(format, value);
+	}
+	
+}
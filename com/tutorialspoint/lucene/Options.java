@@ -0,0 +1,167 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the optional parameters.
+ * These are the "key=value" lines that follow the fixed parameters in the parameterFile,
+ * in any order. Blank lines and lines starting with '#' are ignored.
+ * 
+ * @author amir
+ * 
+ */
+public class Options {
+
+	private Map<String,String> values; 		// Dictionary of key -> value
+
+	/**
+	 * Constructor.
+	 * 
+	 */
+	public Options() {
+
+		// Initialize the dictionary
+		values = new LinkedHashMap<String,String>();
+
+	}
+
+	/**
+	 * Reads the remaining "key=value" lines from the given reader.
+	 * 
+	 * @param br
+	 * @return
+	 * @throws IOException
+	 */
+	public static Options read(BufferedReader br) throws IOException {
+
+		Options options = new Options();
+
+		String line;
+		while ((line = br.readLine()) != null) {
+
+			// Skip blank lines and comments
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+
+			// Split on the first '=' only, values may contain more of them
+			int eq = line.indexOf('=');
+			if (eq <= 0) {
+				continue;
+			}
+			options.set(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+
+		}
+
+		return options;
+
+	}
+
+	/**
+	 * Sets an option.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void set(String key, String value) {
+		values.put(key, value);
+	}
+
+	/**
+	 * Checks if an option was given.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public boolean has(String key) {
+		return values.containsKey(key);
+	}
+
+	/**
+	 * Returns the option's value, or the default if it wasn't given.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public String getString(String key, String defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Returns the option's value as a boolean ("true", "yes" or "on").
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		String value = values.get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("on");
+	}
+
+	/**
+	 * Returns the option's value as an int.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public int getInt(String key, int defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * Returns the option's value as a long.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public long getLong(String key, long defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : Long.parseLong(value);
+	}
+
+	/**
+	 * Returns the option's value as a double.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public double getDouble(String key, double defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	/**
+	 * Returns the names of all the options.
+	 * 
+	 * @return
+	 */
+	public Set<String> names() {
+		return values.keySet();
+	}
+	
+	/**
+	 * Prints all the options.
+	 * 
+	 */
+	public void print() {
+		for (Map.Entry<String,String> entry : values.entrySet()) {
+			System.out.println("\t- " + entry.getKey() + " = " + entry.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,306 @@
+package com.tutorialspoint.lucene;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records time, allocation and GC activity for every phase of the pipeline:
+ * 	- Bytes allocated by the running thread (com.sun.management.ThreadMXBean)
+ * 	- GC count and pause time (all collectors)
+ * 	- Peak heap (sum of the heap pools' peaks, so it may overestimate a little)
+ * Phases can be normalized per unit of work (documents indexed, queries executed):
+ * allocations, GC count and GC pause per unit are printed, and can be added to the RunReport.
+ * 
+ * Note: allocations by other threads (e.g. background merges) are not counted.
+ * When disabled, begin() and end() do nothing.
+ * 
+ * GC activity and heap peaks are process-wide: when other runs share the process (see MultiCollection),
+ * the profiler is shared, and only reports the allocations, which are per thread.
+ * It then never resets the heap peaks, so getPeakHeapBytes() is the peak of the whole process.
+ * 
+ * @author amir
+ * 
+ */
+public class PhaseProfiler {
+
+	/**
+	 * The measurements of a single phase.
+	 * 
+	 */
+	private static class Phase {
+		String name; 				// Phase name
+		long nanos; 				// Elapsed time
+		long allocatedBytes; 		// Bytes allocated by the thread (-1 if unsupported)
+		long gcCount; 				// Number of collections
+		long gcMillis; 				// Collection time
+		long peakHeapBytes; 		// Peak heap usage
+		long units; 				// Units of work (0 if not normalized)
+		String unit; 				// Unit name ("doc", "query")
+	}
+	
+	private boolean isEnabled; 							// Profiling on/off
+	private boolean isShared; 							// Other runs share the process (no GC and heap figures)
+	private com.sun.management.ThreadMXBean threadBean; // Per-thread allocation counter (null if unsupported)
+	private List<Phase> phases; 						// Completed phases
+	private Phase current; 								// The running phase
+	private long startAllocated; 						// Thread allocation at the start of the running phase
+	private long startGcCount; 							// GC count at the start of the running phase
+	private long startGcMillis; 						// GC time at the start of the running phase
+	private long runPeakHeapBytes; 						// Peak heap of the phases whose peaks were already reset
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param isEnabled
+	 */
+	public PhaseProfiler(boolean isEnabled) {
+		
+		this(isEnabled, false);
+		
+	}
+	
+	/**
+	 * Constructor, for a run that may share the process with others.
+	 * 
+	 * @param isEnabled
+	 * @param isShared
+	 */
+	public PhaseProfiler(boolean isEnabled, boolean isShared) {
+		
+		this.isEnabled = isEnabled;
+		this.isShared = isShared;
+		phases = new ArrayList<Phase>();
+		
+		// Allocation counting is a HotSpot extension
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (isEnabled && bean instanceof com.sun.management.ThreadMXBean) {
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			if (threadBean.isThreadAllocatedMemorySupported()) {
+				threadBean.setThreadAllocatedMemoryEnabled(true);
+			} else {
+				threadBean = null;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Starts a phase.
+	 * 
+	 * @param name
+	 */
+	public void begin(String name) {
+		
+		if (!isEnabled) {
+			return;
+		}
+		
+		current = new Phase();
+		current.name = name;
+		
+		// Reset the peaks, so they belong to this phase (but remember them for the whole run)
+		if (!isShared) {
+			runPeakHeapBytes = Math.max(runPeakHeapBytes, poolPeaks());
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+				}
+			}
+		}
+		
+		startGcCount = gcCount();
+		startGcMillis = gcMillis();
+		startAllocated = allocatedBytes();
+		current.nanos = System.nanoTime();
+		
+	}
+	
+	/**
+	 * Ends the running phase.
+	 * 
+	 */
+	public void end() {
+		end(0, null);
+	}
+	
+	/**
+	 * Ends the running phase, normalizing it by the given units of work.
+	 * 
+	 * @param units
+	 * @param unit
+	 */
+	public void end(long units, String unit) {
+		
+		if (!isEnabled || current == null) {
+			return;
+		}
+		
+		current.nanos = System.nanoTime() - current.nanos;
+		long allocated = allocatedBytes();
+		current.allocatedBytes = allocated < 0 ? -1 : allocated - startAllocated;
+		current.gcCount = isShared ? -1 : gcCount() - startGcCount;
+		current.gcMillis = isShared ? -1 : gcMillis() - startGcMillis;
+		current.peakHeapBytes = isShared ? -1 : poolPeaks();
+		current.units = units;
+		current.unit = unit;
+		
+		phases.add(current);
+		current = null;
+		
+	}
+	
+	/**
+	 * Prints the report, one line per phase.
+	 * 
+	 */
+	public void print() {
+		
+		if (!isEnabled) {
+			return;
+		}
+		
+		System.out.println("\nPhase profile:");
+		System.out.printf("%-20s %10s %12s %6s %8s %10s %16s %14s %14s\n",
+				"phase", "time(ms)", "alloc(MB)", "GCs", "GC(ms)", "peak(MB)", "alloc/unit(KB)", "GCs/unit", "GC/unit(us)");
+		for (Phase phase : phases) {
+			String allocPerUnit = "-";
+			String gcPerUnit = "-";
+			String pausePerUnit = "-";
+			if (phase.units > 0 && phase.allocatedBytes >= 0) {
+				allocPerUnit = String.format("%.2f/%s", phase.allocatedBytes / 1024.0 / phase.units, phase.unit);
+			}
+			if (phase.units > 0 && phase.gcCount >= 0) {
+				gcPerUnit = String.format("%.5f/%s", (double) phase.gcCount / phase.units, phase.unit);
+				pausePerUnit = String.format("%.2f/%s", phase.gcMillis * 1000.0 / phase.units, phase.unit);
+			}
+			System.out.printf("%-20s %10d %12s %6s %8s %10s %16s %14s %14s\n",
+					phase.name,
+					phase.nanos / 1000000,
+					phase.allocatedBytes < 0 ? "n/a" : String.format("%.1f", phase.allocatedBytes / 1048576.0),
+					phase.gcCount < 0 ? "-" : Long.toString(phase.gcCount),
+					phase.gcMillis < 0 ? "-" : Long.toString(phase.gcMillis),
+					phase.peakHeapBytes < 0 ? "-" : String.format("%.1f", phase.peakHeapBytes / 1048576.0),
+					allocPerUnit, gcPerUnit, pausePerUnit);
+		}
+		if (isShared) {
+			System.out.println("(GC and peak heap are process-wide, see the collections report)");
+		}
+		
+	}
+	
+	/**
+	 * Adds the per-unit figures of the last phase with the given name to the report, as
+	 * memory.<prefix>.allocPer<Unit>.KB, memory.<prefix>.gcPer<Unit> and time.<prefix>.gcPausePer<Unit>.us
+	 * (nothing if the phase didn't run or wasn't normalized; no GC figures when the process is shared).
+	 * 
+	 * @param report
+	 * @param phaseName
+	 * @param prefix
+	 */
+	public void report(RunReport report, String phaseName, String prefix) {
+		
+		Phase phase = null;
+		for (Phase candidate : phases) {
+			if (candidate.name.equals(phaseName)) {
+				phase = candidate;
+			}
+		}
+		if (phase == null || phase.units <= 0) {
+			return;
+		}
+		
+		String perUnit = "Per" + Character.toUpperCase(phase.unit.charAt(0)) + phase.unit.substring(1);
+		if (phase.allocatedBytes >= 0) {
+			report.put("memory." + prefix + ".alloc" + perUnit + ".KB", phase.allocatedBytes / 1024.0 / phase.units);
+		}
+		if (phase.gcCount >= 0) {
+			report.put("memory." + prefix + ".gc" + perUnit, (double) phase.gcCount / phase.units);
+			report.put("time." + prefix + ".gcPause" + perUnit + ".us", phase.gcMillis * 1000.0 / phase.units);
+		}
+		
+	}
+	
+	/**
+	 * Checks if other runs share the process (the GC and heap figures aren't this run's).
+	 * 
+	 * @return
+	 */
+	public boolean isShared() {
+		return isShared;
+	}
+	
+	/**
+	 * Returns the peak heap of the whole run so far (works even when profiling is off).
+	 * 
+	 * @return
+	 */
+	public long getPeakHeapBytes() {
+		return Math.max(runPeakHeapBytes, poolPeaks());
+	}
+	
+	/**
+	 * Returns the sum of the heap pools' peaks, since they were last reset.
+	 * 
+	 * @return
+	 */
+	private long poolPeaks() {
+		
+		long bytes = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				bytes += pool.getPeakUsage().getUsed();
+			}
+		}
+		return bytes;
+		
+	}
+	
+	/**
+	 * Returns the bytes allocated so far by the current thread (-1 if unsupported).
+	 * 
+	 * @return
+	 */
+	private long allocatedBytes() {
+		
+		if (threadBean == null) {
+			return -1;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		
+	}
+	
+	/**
+	 * Returns the total number of collections so far, in the whole process.
+	 * 
+	 * @return
+	 */
+	public long gcCount() {
+		
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+		
+	}
+	
+	/**
+	 * Returns the total collection time so far, in milliseconds, in the whole process.
+	 * 
+	 * @return
+	 */
+	public long gcMillis() {
+		
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+		
+	}
+	
+}
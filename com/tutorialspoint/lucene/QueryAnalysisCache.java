@@ -0,0 +1,201 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.Query;
+
+/**
+ * Caches the query-side analysis above the query parser: the parsed query of every query text,
+ * per analyzer fingerprint. A text is parsed (and so analyzed, once per word and field) the first
+ * time it's seen; afterwards the parsed query is served as is, with no parsing and no analysis.
+ * The entries are shared by the search modes (one-at-a-time, batch, load test) and their threads,
+ * and, when saved, by the runs.
+ * 
+ * The cached queries are shared, so they must not be modified (the query expander clones them).
+ * 
+ * @author amir
+ * 
+ */
+public final class QueryAnalysisCache {
+
+	private String fingerprint; 			// Identifies the analyzer, its stop-list and the searched fields
+	private Map<String,Query> entries; 		// Dictionary of query text -> parsed query (shared by the search threads)
+	private AtomicLong hits; 				// Texts served from the cache
+	private AtomicLong misses; 				// Texts parsed
+	private int loaded; 					// Entries read from the saved cache
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param fingerprint
+	 */
+	public QueryAnalysisCache(String fingerprint) {
+		
+		this.fingerprint = fingerprint;
+		entries = new ConcurrentHashMap<String,Query>();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		
+	}
+	
+	/**
+	 * Returns the fingerprint of a query setup: the analyzer's class, its stop-list (in a fixed order),
+	 * and the searched fields. A cache saved with another fingerprint is discarded.
+	 * 
+	 * @param analyzer
+	 * @param stopList
+	 * @param fields
+	 * @return
+	 */
+	public static String fingerprint(Analyzer analyzer, Set<String> stopList, String[] fields) {
+		
+		StringBuilder fingerprint = new StringBuilder(analyzer.getClass().getName());
+		for (String stopWord : new TreeSet<String>(stopList)) {
+			fingerprint.append(' ');
+			fingerprint.append(stopWord);
+		}
+		for (String field : fields) {
+			fingerprint.append(" field:");
+			fingerprint.append(field);
+		}
+		return fingerprint.toString();
+		
+	}
+	
+	/**
+	 * Returns the parsed query of the text, or null if it isn't cached (the caller parses it, and puts it).
+	 * 
+	 * @param text
+	 * @return
+	 */
+	public Query get(String text) {
+		
+		Query query = entries.get(text);
+		if (query == null) {
+			misses.incrementAndGet();
+			Metrics.ANALYSIS_CACHE_MISSES.inc();
+		} else {
+			hits.incrementAndGet();
+			Metrics.ANALYSIS_CACHE_HITS.inc();
+		}
+		return query;
+		
+	}
+	
+	/**
+	 * Caches the parsed query of the text.
+	 * 
+	 * @param text
+	 * @param query
+	 */
+	public void put(String text, Query query) {
+		
+		entries.put(text, query);
+		
+	}
+	
+	/**
+	 * Saves the cache.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(String file) throws IOException {
+		
+		ObjectOutputStream outputStream = null;
+		
+		try {
+			
+			outputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			
+			// Format: <fingerprint> <count> followed by <text, query> entries (the queries serialized)
+			outputStream.writeUTF(fingerprint);
+			outputStream.writeInt(entries.size());
+			for (Map.Entry<String,Query> entry : entries.entrySet()) {
+				outputStream.writeUTF(entry.getKey());
+				outputStream.writeObject(entry.getValue());
+			}
+			
+		} finally {
+			if (outputStream != null) {
+				outputStream.close();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Loads a saved cache for the fingerprint, or starts an empty one if there's none,
+	 * or if it was saved for another analyzer, stop-list or fields.
+	 * 
+	 * @param file
+	 * @param fingerprint
+	 * @return
+	 * @throws IOException
+	 */
+	public static QueryAnalysisCache load(String file, String fingerprint) throws IOException {
+		
+		QueryAnalysisCache cache = new QueryAnalysisCache(fingerprint);
+		if (!new File(file).exists()) {
+			return cache;
+		}
+		
+		ObjectInputStream inputStream = null;
+		
+		try {
+			
+			inputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (!inputStream.readUTF().equals(fingerprint)) {
+				System.out.println("Query analysis cache '" + file + "' is for another analyzer, starting over.");
+				return cache;
+			}
+			
+			int count = inputStream.readInt();
+			for (int i = 0; i < count; i++) {
+				String text = inputStream.readUTF();
+				cache.entries.put(text, (Query) inputStream.readObject());
+			}
+			cache.loaded = count;
+			
+		} catch (ClassNotFoundException e) {
+			
+			// Saved by another version of Lucene
+			System.out.println("Query analysis cache '" + file + "' can't be read (" + e.getMessage() + "), starting over.");
+			cache.entries.clear();
+			
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+		
+		return cache;
+		
+	}
+	
+	/**
+	 * Prints the cache statistics.
+	 * 
+	 */
+	public void print() {
+		
+		long lookups = hits.get() + misses.get();
+		System.out.println("\nQuery analysis cache: " + hits.get() + " / " + lookups + " texts served from the cache"
+				+ " (" + entries.size() + " entries, " + loaded + " loaded)");
+		
+	}
+	
+}
@@ -0,0 +1,321 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Pseudo-relevance feedback: expands a query with the best terms of its top results,
+ * read from the term vectors stored at index time (no stored text is re-analyzed).
+ * 	- RM3 		Terms weighted by P(t|D) = tf/|D|, summed over the feedback docs with P(D|q) ~ score
+ * 	- Rocchio 	Terms weighted by their mean normalized tf over the feedback docs, times their idf
+ * 
+ * The expanded query is the original query (weighted by originalWeight) OR the expansion terms
+ * (weighted by 1 - originalWeight), with one clause per searched field for every term,
+ * within maxClauses clauses in total.
+ * 
+ * The feedback stage (reading the vectors and weighting the terms) has its own budget:
+ * once over it, the expansion uses the documents read so far, and with none, the query isn't expanded.
+ * 
+ * @author amir
+ * 
+ */
+public class QueryExpander {
+
+	private IndexReader reader; 			// Holds the term vectors
+	private String[] fields; 				// The searched fields
+	private boolean isRocchio; 				// Rocchio, or RM3
+	private int feedbackDocs; 				// Top documents to expand from
+	private int feedbackTerms; 				// Expansion terms
+	private float originalWeight; 			// Weight of the original query (0..1)
+	private int maxClauses; 				// Max clauses of the expanded query
+	private long budgetNanos; 				// Feedback stage budget (0 = none)
+	
+	private TermWeights weights; 			// Term -> weight, reused by every query
+	
+	private int expanded; 					// Queries expanded
+	private int notExpanded; 				// Queries left as is (no results, no vectors, or over budget with no docs read)
+	private int overBudget; 				// Feedback stages stopped by the budget
+	private LatencyStats feedbackStats; 	// Feedback stage latencies
+	
+	/**
+	 * A term -> weight map over primitive arrays (open addressing, linear probing),
+	 * cleared in the time of its size.
+	 */
+	private static class TermWeights {
+		
+		String[] terms; 	// Slot -> term (null if empty)
+		double[] weights; 	// Slot -> weight
+		int[] used; 		// The used slots, in insertion order
+		int size; 			// Number of terms
+		
+		TermWeights(int capacity) {
+			terms = new String[capacity];
+			weights = new double[capacity];
+			used = new int[capacity];
+		}
+		
+		void add(String term, double weight) {
+			
+			int mask = terms.length - 1;
+			int slot = term.hashCode() & mask;
+			while (terms[slot] != null) {
+				if (terms[slot].equals(term)) {
+					weights[slot] += weight;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			terms[slot] = term;
+			weights[slot] = weight;
+			used[size++] = slot;
+			
+			// Keep it at most half full
+			if (size * 2 > terms.length) {
+				grow();
+			}
+			
+		}
+		
+		void grow() {
+			
+			String[] oldTerms = terms;
+			double[] oldWeights = weights;
+			int[] oldUsed = used;
+			int oldSize = size;
+			terms = new String[oldTerms.length * 2];
+			weights = new double[oldTerms.length * 2];
+			used = new int[oldTerms.length * 2];
+			size = 0;
+			for (int i = 0; i < oldSize; i++) {
+				add(oldTerms[oldUsed[i]], oldWeights[oldUsed[i]]);
+			}
+			
+		}
+		
+		void clear() {
+			for (int i = 0; i < size; i++) {
+				terms[used[i]] = null;
+			}
+			size = 0;
+		}
+		
+		/**
+		 * Returns the slots of the k heaviest terms, heaviest first.
+		 */
+		int[] top(int k) {
+			
+			k = Math.min(k, size);
+			int[] top = new int[k];
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				
+				// Insertion into the (short) top list
+				int slot = used[i];
+				if (count == k && weights[slot] <= weights[top[k - 1]]) {
+					continue;
+				}
+				int position = count < k ? count++ : k - 1;
+				while (position > 0 && weights[top[position - 1]] < weights[slot]) {
+					top[position] = top[position - 1];
+					position--;
+				}
+				top[position] = slot;
+				
+			}
+			return top;
+			
+		}
+		
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param reader
+	 * @param fields
+	 * @param method
+	 * @param feedbackDocs
+	 * @param feedbackTerms
+	 * @param originalWeight
+	 * @param maxClauses
+	 * @param budgetMillis
+	 */
+	public QueryExpander(IndexReader reader, String[] fields, String method, int feedbackDocs, int feedbackTerms,
+						 float originalWeight, int maxClauses, long budgetMillis) {
+		
+		this.reader = reader;
+		this.fields = fields;
+		isRocchio = method.equalsIgnoreCase("rocchio");
+		this.feedbackDocs = feedbackDocs;
+		this.originalWeight = originalWeight;
+		this.maxClauses = Math.min(maxClauses, BooleanQuery.getMaxClauseCount());
+		budgetNanos = budgetMillis * 1000000;
+		
+		// One clause for the original query, and one per field for every term
+		this.feedbackTerms = Math.max(0, Math.min(feedbackTerms, (this.maxClauses - 1) / fields.length));
+		
+		weights = new TermWeights(1024);
+		feedbackStats = new LatencyStats("Feedback stage");
+		
+	}
+	
+	/**
+	 * Expands the query from the top results of its first stage.
+	 * Returns null if it can't be expanded (the first stage results then stand).
+	 * 
+	 * @param query
+	 * @param results
+	 * @return
+	 * @throws IOException
+	 */
+	public Query expand(Query query, ResultBuffer results) throws IOException {
+		
+		long start = System.nanoTime();
+		weights.clear();
+		
+		int docs = Math.min(feedbackDocs, results.size());
+		double scoreSum = 0;
+		for (int i = 0; i < docs; i++) {
+			scoreSum += results.getScore(i);
+		}
+		
+		// Read the vectors of the feedback docs, within the budget
+		int docsRead = 0;
+		for (int i = 0; i < docs; i++) {
+			
+			if (budgetNanos > 0 && System.nanoTime() - start > budgetNanos) {
+				overBudget++;
+				break;
+			}
+			
+			// The document's vectors, over all the searched fields
+			TermFreqVector[] vectors = new TermFreqVector[fields.length];
+			long length = 0;
+			for (int f = 0; f < fields.length; f++) {
+				vectors[f] = reader.getTermFreqVector(results.getDoc(i), fields[f]);
+				if (vectors[f] != null) {
+					for (int tf : vectors[f].getTermFrequencies()) {
+						length += tf;
+					}
+				}
+			}
+			if (length == 0) {
+				continue;
+			}
+			
+			// RM3 weighs the document by its score, Rocchio weighs them all the same
+			double docWeight = isRocchio || scoreSum == 0 ? 1.0 / docs : results.getScore(i) / scoreSum;
+			for (TermFreqVector vector : vectors) {
+				if (vector == null) {
+					continue;
+				}
+				String[] terms = vector.getTerms();
+				int[] freqs = vector.getTermFrequencies();
+				for (int t = 0; t < terms.length; t++) {
+					weights.add(terms[t], docWeight * freqs[t] / length);
+				}
+			}
+			docsRead++;
+			
+		}
+		
+		if (docsRead == 0 || feedbackTerms == 0) {
+			notExpanded++;
+			feedbackStats.record(System.nanoTime() - start);
+			return null;
+		}
+		
+		// Rocchio: the idf is only looked up for the best candidates by tf
+		int[] top;
+		if (isRocchio) {
+			int[] candidates = weights.top(feedbackTerms * 4);
+			int numDocs = reader.numDocs();
+			for (int slot : candidates) {
+				int docFreq = 0;
+				for (String field : fields) {
+					docFreq = Math.max(docFreq, reader.docFreq(new Term(field, weights.terms[slot])));
+				}
+				weights.weights[slot] *= Math.log((numDocs + 1.0) / (docFreq + 0.5));
+			}
+			top = Arrays.copyOf(candidates, candidates.length);
+			sortByWeight(top);
+			top = Arrays.copyOf(top, Math.min(feedbackTerms, top.length));
+		} else {
+			top = weights.top(feedbackTerms);
+		}
+		
+		// Normalize the expansion weights
+		double weightSum = 0;
+		for (int slot : top) {
+			weightSum += Math.max(0, weights.weights[slot]);
+		}
+		if (weightSum == 0) {
+			notExpanded++;
+			feedbackStats.record(System.nanoTime() - start);
+			return null;
+		}
+		
+		// original^w OR (term^((1-w)*weight) per field)
+		BooleanQuery expandedQuery = new BooleanQuery(true);
+		Query original = (Query) query.clone();
+		original.setBoost(query.getBoost() * originalWeight);
+		expandedQuery.add(original, BooleanClause.Occur.SHOULD);
+		for (int slot : top) {
+			float boost = (float) ((1 - originalWeight) * Math.max(0, weights.weights[slot]) / weightSum);
+			if (boost == 0) {
+				continue;
+			}
+			for (String field : fields) {
+				TermQuery termQuery = new TermQuery(new Term(field, weights.terms[slot]));
+				termQuery.setBoost(boost);
+				expandedQuery.add(termQuery, BooleanClause.Occur.SHOULD);
+			}
+		}
+		
+		expanded++;
+		feedbackStats.record(System.nanoTime() - start);
+		return expandedQuery;
+		
+	}
+	
+	/**
+	 * Sorts the slots by descending weight (short lists).
+	 * 
+	 * @param slots
+	 */
+	private void sortByWeight(int[] slots) {
+		
+		for (int i = 1; i < slots.length; i++) {
+			int slot = slots[i];
+			int j = i;
+			while (j > 0 && weights.weights[slots[j - 1]] < weights.weights[slot]) {
+				slots[j] = slots[j - 1];
+				j--;
+			}
+			slots[j] = slot;
+		}
+		
+	}
+	
+	/**
+	 * Prints the feedback statistics.
+	 * 
+	 */
+	public void print() {
+		
+		System.out.println("\nFeedback (" + (isRocchio ? "Rocchio" : "RM3") + ", " + feedbackDocs + " docs, "
+				+ feedbackTerms + " terms): " + expanded + " queries expanded, " + notExpanded + " not expanded, "
+				+ overBudget + " over the feedback budget");
+		feedbackStats.print();
+		
+	}
+	
+}
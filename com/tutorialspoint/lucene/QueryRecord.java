@@ -0,0 +1,84 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single query from the query file (".I <id>" followed by ".W" and the text).
+ * 
+ * @author amir
+ * 
+ */
+public class QueryRecord {
+
+	public String id; 			// The queryID
+	public String text; 		// The query text (lines joined with spaces)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param id
+	 * @param text
+	 */
+	public QueryRecord(String id, String text) {
+		
+		this.id = id;
+		this.text = text;
+		
+	}
+	
+	/**
+	 * Reads the entire query file.
+	 * 
+	 * @param queryFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<QueryRecord> load(String queryFile) throws IOException {
+		
+		List<QueryRecord> queries = new ArrayList<QueryRecord>();
+		BufferedReader inputStream = null;
+		StringBuilder query;
+		String id;
+		
+		try {
+			
+			// Initialize the input stream from the query file
+			inputStream = new BufferedReader(new FileReader(queryFile));
+			
+			// Start reading the query file
+			char space = ' ';
+			String line = inputStream.readLine();
+	        while (line != null) {
+	        	
+	    		// Extract the ID
+	    		id = line.substring(3);
+	        		
+	    		// Read the next line, which is ".W"
+	    		line = inputStream.readLine();
+	    		
+	    		// Read the data
+	    		query = new StringBuilder();
+	    		while ((line = inputStream.readLine()) != null && !line.startsWith(".I ")) {
+	    			query.append(line);
+	    			query.append(space);
+	        	}
+	    		
+	    		queries.add(new QueryRecord(id, query.toString()));
+	            
+	        }
+	        
+		} finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+		
+		return queries;
+		
+	}
+	
+}
@@ -0,0 +1,236 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams the records of the docs file (".I <id>", ".W", then the text lines),
+ * so a document is never held in memory as a whole.
+ * After next() returns a record's ID, the reader returns the record's text, with every
+ * line ending as a space (same as joining the lines), and ends at the next ".I " line.
+ * 
+ * The text can be split on the fly: readTitle() consumes it up to the first '.',
+ * and the reader then returns the rest (the body). A prefix (e.g. repeated title)
+ * can be returned ahead of the remaining text.
+ * 
+ * @author amir
+ * 
+ */
+public class RecordReader extends Reader {
+
+	private static final char[] RECORD_START = {'.', 'I', ' '};
+	
+	private BufferedReader in; 			// The docs file
+	private boolean isLineStart; 		// The next char starts a line
+	private boolean isEnded; 			// The current record has no more text
+	private CharSequence prefix; 		// Returned ahead of the remaining text (null if none)
+	private int prefixPos; 				// Position in the prefix
+	private char[] skip; 				// Scratch buffer for skipping the rest of a record
+	private char[] c; 					// Scratch buffer for reading the title
+	private StringBuilder title; 		// Scratch buffer for the title
+	private long charsRead; 			// Chars of record text read so far (without the prefixes)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param in
+	 */
+	public RecordReader(BufferedReader in) {
+		
+		this.in = in;
+		isEnded = true;
+		skip = new char[256];
+		c = new char[1];
+		title = new StringBuilder();
+		
+	}
+	
+	/**
+	 * Skips the rest of the current record, and moves to the next one.
+	 * Returns the next record's ID, or null at the end of the file.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public String next() throws IOException {
+		
+		// Skip whatever wasn't read from the current record
+		while (read(skip, 0, skip.length) != -1);
+		
+		// Read the ".I <id>" line
+		String line = in.readLine();
+		if (line == null) {
+			return null;
+		}
+		String id = line.substring(3);
+		
+		// Read the next line, which is ".W"
+		in.readLine();
+		
+		isLineStart = true;
+		isEnded = false;
+		prefix = null;
+		return id;
+		
+	}
+	
+	/**
+	 * Reads the record's text up to (not including) the first '.',
+	 * or all of it if it has none. The reader then continues after the '.'.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public String readTitle() throws IOException {
+		
+		return readTitle(new StringBuilder()).toString();
+		
+	}
+	
+	/**
+	 * Same as readTitle(), but reads the title into the reader's own buffer, without allocating.
+	 * The buffer is overwritten by the next call.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public CharSequence readTitleInPlace() throws IOException {
+		
+		title.setLength(0);
+		return readTitle(title);
+		
+	}
+	
+	/**
+	 * Reads the title into the given buffer.
+	 * 
+	 * @param title
+	 * @return
+	 * @throws IOException
+	 */
+	private StringBuilder readTitle(StringBuilder title) throws IOException {
+		
+		while (read(c, 0, 1) != -1 && c[0] != '.') {
+			title.append(c[0]);
+		}
+		return title;
+		
+	}
+	
+	/**
+	 * Returns the number of chars of record text read so far (the prefixes aren't counted).
+	 * 
+	 * @return
+	 */
+	public long getCharsRead() {
+		return charsRead;
+	}
+	
+	/**
+	 * Sets a prefix, returned ahead of the remaining text.
+	 * The prefix isn't copied, it must not change until it's been read.
+	 * 
+	 * @param prefix
+	 */
+	public void setPrefix(CharSequence prefix) {
+		
+		this.prefix = prefix;
+		prefixPos = 0;
+		
+	}
+	
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		
+		int n = 0;
+		
+		// The prefix comes first
+		if (prefix != null) {
+			n = Math.min(len, prefix.length() - prefixPos);
+			for (int i = 0; i < n; i++) {
+				cbuf[off + i] = prefix.charAt(prefixPos + i);
+			}
+			prefixPos += n;
+			if (prefixPos == prefix.length()) {
+				prefix = null;
+			}
+		}
+		
+		int start = n;
+		while (n < len && !isEnded) {
+			
+			// A line starting with ".I " is the next record
+			if (isLineStart) {
+				if (isRecordStart()) {
+					isEnded = true;
+					break;
+				}
+				isLineStart = false;
+			}
+			
+			int c = in.read();
+			if (c == -1) {
+				// The last line ends at the end of the file
+				cbuf[off + n++] = ' ';
+				isEnded = true;
+			} else if (c == '\n' || c == '\r') {
+				// Line endings become spaces ("\r\n" is a single line ending)
+				if (c == '\r') {
+					in.mark(1);
+					if (in.read() != '\n') {
+						in.reset();
+					}
+				}
+				cbuf[off + n++] = ' ';
+				isLineStart = true;
+			} else {
+				cbuf[off + n++] = (char) c;
+			}
+			
+		}
+		charsRead += n - start;
+		
+		return n == 0 && isEnded ? -1 : n;
+		
+	}
+	
+	/**
+	 * Checks if the next line starts a new record (or the file has ended), without consuming it.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean isRecordStart() throws IOException {
+		
+		in.mark(RECORD_START.length);
+		try {
+			int c = in.read();
+			if (c == -1) {
+				return true;
+			}
+			for (int i = 0; i < RECORD_START.length; i++) {
+				if (i > 0) {
+					c = in.read();
+				}
+				if (c != RECORD_START[i]) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			in.reset();
+		}
+		
+	}
+	
+	/**
+	 * Does nothing: the analyzer closes the field's reader when it's done with it,
+	 * but the docs file stays open for the next records.
+	 * 
+	 */
+	@Override
+	public void close() {
+	}
+	
+}
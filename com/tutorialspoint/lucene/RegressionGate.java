@@ -0,0 +1,138 @@
+package com.tutorialspoint.lucene;
+
+/**
+ * Compares a run against a stored baseline, and flags the metrics that got worse
+ * beyond their tolerance:
+ * 	- time.*, throughput.*, memory.* 	relative tolerance (e.g. 0.20 = 20% worse)
+ * 	- quality.* 						absolute tolerance (e.g. 0.005 MAP points)
+ * A relative metric whose baseline is 0 (e.g. no merge time, no GCs) is shown but never fails:
+ * any growth from 0 is infinitely worse, however small.
+ * 
+ * @author amir
+ * 
+ */
+public class RegressionGate {
+
+	private double timeTolerance; 			// Relative, for time.*
+	private double throughputTolerance; 	// Relative, for throughput.*
+	private double memoryTolerance; 		// Relative, for memory.*
+	private double qualityTolerance; 		// Absolute, for quality.*
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param timeTolerance
+	 * @param throughputTolerance
+	 * @param memoryTolerance
+	 * @param qualityTolerance
+	 */
+	public RegressionGate(double timeTolerance, double throughputTolerance, double memoryTolerance, double qualityTolerance) {
+		
+		this.timeTolerance = timeTolerance;
+		this.throughputTolerance = throughputTolerance;
+		this.memoryTolerance = memoryTolerance;
+		this.qualityTolerance = qualityTolerance;
+		
+	}
+	
+	/**
+	 * Prints a diff table of the two runs, and returns the number of regressions.
+	 * New metrics (not in the baseline) are shown but never fail;
+	 * metrics of the baseline that the current run lacks (e.g. quality.* without a truth file) count as regressions.
+	 * 
+	 * @param baseline
+	 * @param current
+	 * @return
+	 */
+	public int compare(RunReport baseline, RunReport current) {
+		return compare(baseline, current, new String[0]);
+	}
+	
+	/**
+	 * Prints a diff table of the two runs, and returns the number of regressions.
+	 * Missing metrics that start with one of the unmeasured prefixes (e.g. time.index.* in a run that
+	 * resumed without building the index) are shown as skipped, and don't count.
+	 * 
+	 * @param baseline
+	 * @param current
+	 * @param unmeasured
+	 * @return
+	 */
+	public int compare(RunReport baseline, RunReport current, String[] unmeasured) {
+		
+		int regressions = 0;
+		
+		System.out.println("\nComparison with the baseline:");
+		System.out.printf("%-32s %14s %14s %10s  %s\n", "metric", "baseline", "current", "change", "status");
+		
+		for (String name : current.names()) {
+			
+			Double before = baseline.get(name);
+			double after = current.get(name);
+			if (before == null) {
+				System.out.printf("%-32s %14s %14.4f %10s  %s\n", name, "-", after, "-", "new");
+				continue;
+			}
+			
+			String change;
+			boolean isRegression;
+			if (!name.startsWith("quality.") && before == 0) {
+				System.out.printf("%-32s %14.4f %14.4f %10s  %s\n", name, before, after, "-", "ok (zero baseline)");
+				continue;
+			} else if (name.startsWith("quality.")) {
+				change = String.format("%+.4f", after - before);
+				isRegression = after < before - qualityTolerance;
+			} else {
+				change = String.format("%+.1f%%", (after - before) * 100 / before);
+				if (name.startsWith("throughput.")) {
+					isRegression = after < before * (1 - throughputTolerance);
+				} else if (name.startsWith("memory.")) {
+					isRegression = after > before * (1 + memoryTolerance);
+				} else {
+					isRegression = after > before * (1 + timeTolerance);
+				}
+			}
+			
+			if (isRegression) {
+				regressions++;
+			}
+			System.out.printf("%-32s %14.4f %14.4f %10s  %s\n", name, before, after, change, isRegression ? "REGRESSION" : "ok");
+			
+		}
+		
+		for (String name : baseline.names()) {
+			if (current.get(name) == null) {
+				if (startsWithAny(name, unmeasured)) {
+					System.out.printf("%-32s %14.4f %14s %10s  %s\n", name, baseline.get(name), "-", "-", "skipped (not measured)");
+					continue;
+				}
+				regressions++;
+				System.out.printf("%-32s %14.4f %14s %10s  %s\n", name, baseline.get(name), "-", "-", "REGRESSION (missing)");
+			}
+		}
+		
+		System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s) found.");
+		
+		return regressions;
+		
+	}
+	
+	/**
+	 * Checks if the name starts with one of the prefixes.
+	 * 
+	 * @param name
+	 * @param prefixes
+	 * @return
+	 */
+	private static boolean startsWithAny(String name, String[] prefixes) {
+		
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+		
+	}
+	
+}
@@ -0,0 +1,200 @@
+package com.tutorialspoint.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * A reusable buffer for the results of a single query.
+ * Holds the ranked docs and scores in primitive arrays, so a query can be collected once
+ * and fed to all the consumers (output, benchmark, cache) without allocating per hit.
+ * 
+ * @author amir
+ * 
+ */
+public class ResultBuffer {
+
+	int[] docs; 				// Internal doc numbers, by rank
+	float[] scores; 			// Scores, by rank
+	int size; 					// Number of results in the buffer
+	int totalHits; 				// Number of matching documents (may be more than size)
+	String[] docIDs; 			// Internal doc number -> external docID (from the field cache)
+	int[] numericDocIDs; 		// Internal doc number -> numeric external docID (from the docID map, null if none)
+	String query; 				// The query text the results belong to
+	boolean truncated; 			// The search was stopped by the query budget (partial results)
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 */
+	public ResultBuffer(int capacity) {
+		
+		docs = new int[capacity];
+		scores = new float[capacity];
+		
+	}
+	
+	/**
+	 * Empties the buffer, for reuse by the next query.
+	 * 
+	 * @param query
+	 */
+	public void clear(String query) {
+		
+		this.query = query;
+		size = 0;
+		totalHits = 0;
+		truncated = false;
+		
+	}
+	
+	/**
+	 * Fills the buffer from a TopDocs (for searches that don't go through a collector).
+	 * 
+	 * @param hits
+	 */
+	public void fill(TopDocs hits) {
+		
+		size = Math.min(hits.scoreDocs.length, docs.length);
+		totalHits = hits.totalHits;
+		for (int i = 0; i < size; i++) {
+			ScoreDoc scoreDoc = hits.scoreDocs[i];
+			docs[i] = scoreDoc.doc;
+			scores[i] = scoreDoc.score;
+		}
+		
+	}
+	
+	/**
+	 * Copies the results of another buffer into this one.
+	 * 
+	 * @param docs
+	 * @param scores
+	 * @param size
+	 * @param totalHits
+	 */
+	public void fill(int[] docs, float[] scores, int size, int totalHits) {
+		
+		this.size = Math.min(size, this.docs.length);
+		this.totalHits = totalHits;
+		System.arraycopy(docs, 0, this.docs, 0, this.size);
+		System.arraycopy(scores, 0, this.scores, 0, this.size);
+		
+	}
+	
+	/**
+	 * Sets the docID lookup table (internal doc number -> external docID).
+	 * 
+	 * @param docIDs
+	 */
+	public void setDocIDs(String[] docIDs) {
+		this.docIDs = docIDs;
+		numericDocIDs = null;
+	}
+	
+	/**
+	 * Sets the numeric docID lookup table (internal doc number -> numeric external docID),
+	 * instead of the String one.
+	 * 
+	 * @param numericDocIDs
+	 */
+	public void setNumericDocIDs(int[] numericDocIDs) {
+		this.numericDocIDs = numericDocIDs;
+		docIDs = null;
+	}
+	
+	/**
+	 * Checks if the docIDs are numeric.
+	 * 
+	 * @return
+	 */
+	public boolean hasNumericDocIDs() {
+		return numericDocIDs != null;
+	}
+	
+	/**
+	 * Returns the number of results.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of matching documents.
+	 * 
+	 * @return
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+	
+	/**
+	 * Returns the internal doc number at the given rank (0 based).
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public int getDoc(int i) {
+		return docs[i];
+	}
+	
+	/**
+	 * Returns the score at the given rank (0 based).
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public float getScore(int i) {
+		return scores[i];
+	}
+	
+	/**
+	 * Returns the external docID at the given rank (0 based).
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public String getDocID(int i) {
+		return numericDocIDs != null ? Integer.toString(numericDocIDs[docs[i]]) : docIDs[docs[i]];
+	}
+	
+	/**
+	 * Returns the numeric external docID at the given rank (0 based), if the docIDs are numeric.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public int getNumericDocID(int i) {
+		return numericDocIDs[docs[i]];
+	}
+	
+	/**
+	 * Marks the results as partial (the search was stopped by the query budget).
+	 * 
+	 * @param truncated
+	 */
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+	
+	/**
+	 * Checks if the results are partial.
+	 * 
+	 * @return
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+	
+	/**
+	 * Returns the query text.
+	 * 
+	 * @return
+	 */
+	public String getQuery() {
+		return query;
+	}
+	
+}
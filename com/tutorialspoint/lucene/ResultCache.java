@@ -0,0 +1,110 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the results of recent queries, by query text.
+ * A repeated query is served from the cache instead of being searched again.
+ * The least recently used entry is evicted once the cache is full.
+ * 
+ * @author amir
+ * 
+ */
+public class ResultCache implements ResultConsumer {
+
+	/**
+	 * A single cached result list.
+	 * 
+	 */
+	private static class Entry {
+		int[] docs;
+		float[] scores;
+		int totalHits;
+	}
+	
+	private Map<String,Entry> entries; 		// Dictionary of query text -> results, in LRU order
+	private int hits; 						// Number of lookups served from the cache
+	private int misses; 					// Number of lookups that weren't
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxEntries
+	 */
+	public ResultCache(final int maxEntries) {
+		
+		entries = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		
+	}
+	
+	/**
+	 * Looks the query up, and if found, copies its results into the buffer.
+	 * 
+	 * @param query
+	 * @param results
+	 * @return
+	 */
+	public boolean lookup(String query, ResultBuffer results) {
+		
+		Entry entry = entries.get(query);
+		if (entry == null) {
+			misses++;
+			Metrics.RESULT_CACHE_MISSES.inc();
+			return false;
+		}
+		
+		hits++;
+		Metrics.RESULT_CACHE_HITS.inc();
+		results.clear(query);
+		results.fill(entry.docs, entry.scores, entry.docs.length, entry.totalHits);
+		return true;
+		
+	}
+	
+	/**
+	 * Stores a copy of the query's results (one copy per query, not per hit).
+	 * 
+	 */
+	public void consume(String queryID, ResultBuffer results) throws IOException {
+		
+		// Partial results aren't cached, the next run of the query may complete
+		if (entries.containsKey(results.getQuery()) || results.isTruncated()) {
+			return;
+		}
+		
+		Entry entry = new Entry();
+		entry.docs = new int[results.size()];
+		entry.scores = new float[results.size()];
+		entry.totalHits = results.getTotalHits();
+		System.arraycopy(results.docs, 0, entry.docs, 0, results.size());
+		System.arraycopy(results.scores, 0, entry.scores, 0, results.size());
+		entries.put(results.getQuery(), entry);
+		
+	}
+	
+	/**
+	 * Returns the number of lookups served from the cache.
+	 * 
+	 * @return
+	 */
+	public int getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the number of lookups that weren't.
+	 * 
+	 * @return
+	 */
+	public int getMisses() {
+		return misses;
+	}
+	
+}
@@ -0,0 +1,24 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of every query, as they are collected.
+ * All the consumers of a query are fed from the same ResultBuffer,
+ * which is reused by the next query, so consumers must not keep a reference to it.
+ * 
+ * @author amir
+ * 
+ */
+public interface ResultConsumer {
+
+	/**
+	 * Consumes the results of a single query.
+	 * 
+	 * @param queryID
+	 * @param results
+	 * @throws IOException
+	 */
+	public void consume(String queryID, ResultBuffer results) throws IOException;
+	
+}
@@ -0,0 +1,156 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Converts runs between the text format ("q<id>,doc<id>,<rank>" lines) and the binary columnar format,
+ * and evaluates binary runs side by side.
+ * 
+ * Usage:
+ * 	RunConverter toBinary <textRun> <binaryRun>
+ * 	RunConverter toText <binaryRun> <textRun>
+ * 	RunConverter evaluate <truthFile> <binaryRun> [<binaryRun> ...]
+ * 
+ * @author amir
+ * 
+ */
+public class RunConverter {
+
+	/**
+	 * Converts a text run to a binary run. Text runs have no scores, they are stored as NaN.
+	 * 
+	 * @param textRun
+	 * @param binaryRun
+	 * @throws IOException
+	 */
+	public static void toBinary(String textRun, String binaryRun) throws IOException {
+		
+		BufferedReader inputStream = null;
+		BinaryRunWriter writer = new BinaryRunWriter(binaryRun);
+		
+		// Every query is gathered into the buffer, with its own docIDs as the lookup table
+		ResultBuffer results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+		String[] docIDs = new String[LuceneConstants.MAX_SEARCH];
+		results.setDocIDs(docIDs);
+		String queryID = null;
+		
+		try {
+			
+			inputStream = new BufferedReader(new FileReader(textRun));
+			String line;
+			while ((line = inputStream.readLine()) != null) {
+				
+				// q<id>,doc<id>,<rank> or q<id>,dummy,1
+				int first = line.indexOf(',');
+				int second = line.indexOf(',', first + 1);
+				if (first < 0 || second < 0) {
+					continue;
+				}
+				String id = line.substring(1, first);
+				String doc = line.substring(first + 1, second);
+				
+				// A new query, write the previous one
+				if (!id.equals(queryID)) {
+					if (queryID != null) {
+						writer.consume(queryID, results);
+					}
+					queryID = id;
+					results.clear(null);
+				}
+				
+				if (doc.startsWith("doc") && results.size < docIDs.length) {
+					docIDs[results.size] = doc.substring(3);
+					results.docs[results.size] = results.size;
+					results.scores[results.size] = Float.NaN;
+					results.size++;
+					results.totalHits++;
+				}
+				
+			}
+			if (queryID != null) {
+				writer.consume(queryID, results);
+			}
+			
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+			writer.close();
+		}
+		
+	}
+	
+	/**
+	 * Converts a binary run to a text run.
+	 * 
+	 * @param binaryRun
+	 * @param textRun
+	 * @throws IOException
+	 */
+	public static void toText(String binaryRun, String textRun) throws IOException {
+		
+		BinaryRunReader reader = new BinaryRunReader(binaryRun);
+		PrintWriter outputStream = new PrintWriter(new BufferedWriter(new FileWriter(textRun)));
+		try {
+			reader.replay(new RunFileWriter(outputStream));
+		} finally {
+			outputStream.close();
+		}
+		
+	}
+	
+	/**
+	 * Evaluates binary runs against the truth, and prints their MAP and prec@k side by side.
+	 * 
+	 * @param truthFile
+	 * @param binaryRuns
+	 * @throws IOException
+	 */
+	public static void evaluate(String truthFile, String[] binaryRuns) throws IOException {
+		
+		System.out.printf("%-40s %8s %8s %8s %8s\n", "run", "queries", "MAP", "Prec@5", "Prec@10");
+		for (String binaryRun : binaryRuns) {
+			BinaryRunReader reader = new BinaryRunReader(binaryRun);
+			Benchmark benchmark = new Benchmark(truthFile);
+			benchmark.evaluate(reader);
+			System.out.printf("%-40s %8d %8.4f %8.4f %8.4f\n", binaryRun, reader.size(),
+					benchmark.calculateMAP(), benchmark.calculateMeanPrecisionAt(5), benchmark.calculateMeanPrecisionAt(10));
+		}
+		
+	}
+	
+	public static void main(String[] args) {
+		
+		if (args.length < 3) {
+			System.out.println("Usage: RunConverter toBinary <textRun> <binaryRun>");
+			System.out.println("       RunConverter toText <binaryRun> <textRun>");
+			System.out.println("       RunConverter evaluate <truthFile> <binaryRun> [<binaryRun> ...]");
+			return;
+		}
+		
+		try {
+			
+			if (args[0].equalsIgnoreCase("toBinary")) {
+				toBinary(args[1], args[2]);
+			} else if (args[0].equalsIgnoreCase("toText")) {
+				toText(args[1], args[2]);
+			} else if (args[0].equalsIgnoreCase("evaluate")) {
+				String[] binaryRuns = new String[args.length - 2];
+				System.arraycopy(args, 2, binaryRuns, 0, binaryRuns.length);
+				evaluate(args[1], binaryRuns);
+			} else {
+				System.out.println("Unknown command '" + args[0] + "'");
+			}
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
+}
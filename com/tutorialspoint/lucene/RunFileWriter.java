@@ -0,0 +1,117 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes the results of every query to the run file, one "q<id>,doc<id>,<rank>" line per hit.
+ * The lines are built in a reusable char buffer, instead of a printf() per hit.
+ * 
+ * @author amir
+ * 
+ */
+public class RunFileWriter implements ResultConsumer {
+
+	private PrintWriter outputStream; 		// The run file
+	private char[] line; 					// Reusable line buffer
+	private int length; 					// Length of the current line
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputStream
+	 */
+	public RunFileWriter(PrintWriter outputStream) {
+		
+		this.outputStream = outputStream;
+		line = new char[64];
+		
+	}
+	
+	/**
+	 * Writes the query's results (or a 'dummy' line if there are none).
+	 * 
+	 */
+	public void consume(String queryID, ResultBuffer results) throws IOException {
+		
+		// If no hits were made, print 'dummy'
+		if (results.size() == 0) {
+			length = 0;
+			append("q");
+			append(queryID);
+			append(",dummy,1\n");
+			outputStream.write(line, 0, length);
+			return;
+		}
+		
+		// Else, print the search results
+		for (int i = 0; i < results.size(); i++) {
+			length = 0;
+			append("q");
+			append(queryID);
+			append(",doc");
+			if (results.hasNumericDocIDs()) {
+				append(results.getNumericDocID(i));
+			} else {
+				append(results.getDocID(i));
+			}
+			append(",");
+			append(i + 1);
+			append("\n");
+			outputStream.write(line, 0, length);
+		}
+		
+	}
+	
+	/**
+	 * Appends a string to the line.
+	 * 
+	 * @param s
+	 */
+	private void append(String s) {
+		
+		ensureCapacity(length + s.length());
+		s.getChars(0, s.length(), line, length);
+		length += s.length();
+		
+	}
+	
+	/**
+	 * Appends a non-negative int to the line, without going through a String.
+	 * 
+	 * @param value
+	 */
+	private void append(int value) {
+		
+		// Count the digits
+		int digits = 1;
+		for (int v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		
+		// Write them backwards
+		ensureCapacity(length + digits);
+		for (int i = length + digits - 1; i >= length; i--) {
+			line[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+		
+	}
+	
+	/**
+	 * Grows the line buffer if needed (only for unusually long IDs).
+	 * 
+	 * @param capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		
+		if (capacity > line.length) {
+			char[] bigger = new char[Math.max(capacity, 2 * line.length)];
+			System.arraycopy(line, 0, bigger, 0, length);
+			line = bigger;
+		}
+		
+	}
+	
+}
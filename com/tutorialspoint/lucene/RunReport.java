@@ -0,0 +1,124 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The measurements of a single run (timings, throughput, memory and quality),
+ * saved to and loaded from a "name=value" file, like the parameterFile.
+ * 
+ * Every metric name starts with its kind, which decides how it's compared (see RegressionGate):
+ * 	- time.* 			lower is better
+ * 	- throughput.* 		higher is better
+ * 	- memory.* 			lower is better
+ * 	- quality.* 		higher is better
+ * 
+ * @author amir
+ * 
+ */
+public class RunReport {
+
+	private Map<String,Double> metrics; 		// Dictionary of metric name -> value, in insertion order
+	
+	/**
+	 * Constructor.
+	 * 
+	 */
+	public RunReport() {
+		
+		// Initialize the dictionary
+		metrics = new LinkedHashMap<String,Double>();
+		
+	}
+	
+	/**
+	 * Sets a metric.
+	 * 
+	 * @param name
+	 * @param value
+	 */
+	public void put(String name, double value) {
+		metrics.put(name, value);
+	}
+	
+	/**
+	 * Returns a metric, or null if it wasn't measured.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public Double get(String name) {
+		return metrics.get(name);
+	}
+	
+	/**
+	 * Returns the names of all the metrics.
+	 * 
+	 * @return
+	 */
+	public Set<String> names() {
+		return metrics.keySet();
+	}
+	
+	/**
+	 * Saves the report.
+	 * 
+	 * @param reportFile
+	 * @throws IOException
+	 */
+	public void save(String reportFile) throws IOException {
+		
+		PrintWriter outputStream = null;
+		
+		try {
+			
+			outputStream = new PrintWriter(new FileWriter(reportFile));
+			for (Map.Entry<String,Double> entry : metrics.entrySet()) {
+				outputStream.println(entry.getKey() + "=" + entry.getValue());
+			}
+			
+		} finally {
+			if (outputStream != null) {
+				outputStream.close();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Loads a saved report.
+	 * 
+	 * @param reportFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static RunReport load(String reportFile) throws IOException {
+		
+		RunReport report = new RunReport();
+		BufferedReader inputStream = null;
+		
+		try {
+			
+			inputStream = new BufferedReader(new FileReader(reportFile));
+			Options values = Options.read(inputStream);
+			for (String name : values.names()) {
+				report.put(name, values.getDouble(name, 0));
+			}
+			
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+		
+		return report;
+		
+	}
+	
+}
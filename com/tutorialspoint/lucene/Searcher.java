@@ -4,16 +4,15 @@ import java.io.File;
 import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 
@@ -28,6 +27,13 @@ public class Searcher {
 	IndexSearcher indexSearcher; 	// Implements search over an index
 	QueryParser queryParser; 		// Parses a user-given query 
 	Query query; 					// The parsed query, to be used by the index searcher
+	MaxScoreEvaluator evaluator; 	// Dynamic pruning evaluator (null if pruning is off)
+	String[] docIDs; 				// Internal doc number -> external docID (loaded on first use)
+	String[] fields; 				// The searched fields
+	long budgetMillis; 				// Per-query time budget (0 = none)
+	long budgetDocs; 				// Per-query work budget, in documents scored (0 = none)
+	QueryExpander expander; 		// Pseudo-relevance feedback (null if off)
+	QueryAnalysisCache analysisCache; 	// Parsed queries by text (null if off)
 
 	/**
 	 * Constructor.
@@ -35,25 +41,66 @@ public class Searcher {
 	 * @param indexDirectoryPath
 	 * @throws IOException
 	 */
-	@SuppressWarnings("deprecation")
 	public Searcher(String indexDirectoryPath, Analyzer analyzer, boolean isBasic) throws IOException {
 		
-		// Open the directory where the index is saved
-		Directory indexDirectory = FSDirectory.open(new File(indexDirectoryPath));
+		this(indexDirectoryPath, analyzer, defaultFields(isBasic));
+		
+	}
+	
+	/**
+	 * Constructor, searching the given fields.
+	 * 
+	 * @param indexDirectoryPath
+	 * @param analyzer
+	 * @param fields
+	 * @throws IOException
+	 */
+	@SuppressWarnings("deprecation")
+	public Searcher(String indexDirectoryPath, Analyzer analyzer, String[] fields) throws IOException {
 		
-		// Initialize the index searcher
-		indexSearcher = new IndexSearcher(indexDirectory);
+		// Open the directory where the index is saved, and initialize the index searcher
+		this(new IndexSearcher(FSDirectory.open(new File(indexDirectoryPath))), analyzer, fields);
 		
-		if (isBasic) {
+	}
+	
+	/**
+	 * Constructor, over an already opened index searcher.
+	 * Several Searchers (e.g. one per thread) can share the same index searcher,
+	 * since only the query parser isn't thread-safe.
+	 * 
+	 * @param indexSearcher
+	 * @param analyzer
+	 * @param isBasic
+	 */
+	public Searcher(IndexSearcher indexSearcher, Analyzer analyzer, boolean isBasic) {
+		
+		this(indexSearcher, analyzer, defaultFields(isBasic));
+		
+	}
+	
+	/**
+	 * Constructor, over an already opened index searcher, searching the given fields.
+	 * A single field is parsed with a plain query parser, several with a multi-field parser
+	 * (one clause per field for every query term).
+	 * 
+	 * @param indexSearcher
+	 * @param analyzer
+	 * @param fields
+	 */
+	public Searcher(IndexSearcher indexSearcher, Analyzer analyzer, String[] fields) {
+		
+		this.indexSearcher = indexSearcher;
+		this.fields = fields;
+		
+		if (fields.length == 1) {
 			
 			// Initialize the query parser
 			queryParser = new QueryParser(Version.LUCENE_36,
-										  LuceneConstants.CONTENTS,
+										  fields[0],
 										  analyzer);
 			
 		} else {
 			
-			String[] fields = {LuceneConstants.TITLE, LuceneConstants.BODY};
 			queryParser = new MultiFieldQueryParser(Version.LUCENE_36,
 													fields,
 													analyzer);
@@ -61,9 +108,76 @@ public class Searcher {
 		}
 		
 	}
+	
+	/**
+	 * Returns the fields searched by default:
+	 * 'contents' for the Basic configuration, 'title' and 'body' for the Advanced one.
+	 * 
+	 * @param isBasic
+	 * @return
+	 */
+	public static String[] defaultFields(boolean isBasic) {
+		
+		if (isBasic) {
+			return new String[] {LuceneConstants.CONTENTS};
+		}
+		return new String[] {LuceneConstants.TITLE, LuceneConstants.BODY};
+		
+	}
+
+	/**
+	 * Turns on dynamic pruning (MaxScore) with the given term upper bounds.
+	 * 
+	 * @param upperBounds
+	 */
+	public void setUpperBounds(TermUpperBounds upperBounds) {
+		
+		evaluator = new MaxScoreEvaluator(indexSearcher, upperBounds);
+		
+	}
+
+	/**
+	 * Sets the per-query budget: a query that goes over it stops early,
+	 * and returns the best of the hits collected so far (flagged as truncated).
+	 * The time budget has the resolution of Lucene's global timer (about 20 ms).
+	 * Disjunctions evaluated with MaxScore are budgeted by the evaluator (checking the clock every few hundred candidates).
+	 * 
+	 * @param millis
+	 * @param docs
+	 */
+	public void setBudget(long millis, long docs) {
+		
+		budgetMillis = millis;
+		budgetDocs = docs;
+		
+	}
+
+	/**
+	 * Turns on pseudo-relevance feedback: the buffered searches become two-stage,
+	 * the query is expanded from its first stage results, and searched again.
+	 * 
+	 * @param expander
+	 */
+	public void setExpander(QueryExpander expander) {
+		
+		this.expander = expander;
+		
+	}
+	
+	/**
+	 * Serves the parsed queries from the given cache (shared with other searchers of the same fields and analyzer).
+	 * 
+	 * @param analysisCache
+	 */
+	public void setAnalysisCache(QueryAnalysisCache analysisCache) {
+		
+		this.analysisCache = analysisCache;
+		
+	}
 
 	/**
 	 * Searches the index with the given query, returning the top search results.
+	 * If pruning is on, long disjunctions are evaluated with MaxScore.
 	 * 
 	 * @param searchQuery
 	 * @return
@@ -72,11 +186,16 @@ public class Searcher {
 	 */
 	public TopDocs search(String searchQuery) throws IOException, ParseException {
       
-		// Escape the query
-		searchQuery = escapeQuery(searchQuery);
-		
 		// Parse the query
-		query = queryParser.parse(searchQuery);
+		query = parse(searchQuery);
+		
+		// Search the index with pruning, if possible
+		if (evaluator != null) {
+			TopDocs hits = evaluator.search(query, LuceneConstants.MAX_SEARCH);
+			if (hits != null) {
+				return hits;
+			}
+		}
 		
 		// Search the index
 		return indexSearcher.search(query, LuceneConstants.MAX_SEARCH);
@@ -84,18 +203,252 @@ public class Searcher {
 	}
 
 	/**
-	 * Retrieve a document from the search results.
+	 * Searches the index with the given query, collecting the top results straight into the buffer.
+	 * The buffer is cleared first, and resolves docIDs through the field cache,
+	 * so consumers never need to load the documents.
 	 * 
-	 * @param scoreDoc
+	 * @param searchQuery
+	 * @param results
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void search(String searchQuery, ResultBuffer results) throws IOException, ParseException {
+		
+		search(searchQuery, results, true);
+		
+	}
+	
+	/**
+	 * Same as search(), but always runs to completion, whatever the budget.
+	 * 
+	 * @param searchQuery
+	 * @param results
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void searchWithoutBudget(String searchQuery, ResultBuffer results) throws IOException, ParseException {
+		
+		search(searchQuery, results, false);
+		
+	}
+	
+	/**
+	 * Searches the index into the buffer, within the budget if asked to,
+	 * and again with the expanded query if feedback is on.
+	 * 
+	 * @param searchQuery
+	 * @param results
+	 * @param isBudgeted
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void search(String searchQuery, ResultBuffer results, boolean isBudgeted) throws IOException, ParseException {
+		
+		Metrics.QUERIES_IN_FLIGHT.inc();
+		long start = System.nanoTime();
+		try {
+			searchStages(searchQuery, results, isBudgeted);
+			Metrics.QUERY_LATENCY.record(System.nanoTime() - start);
+			Metrics.QUERIES_COMPLETED.inc();
+		} finally {
+			Metrics.QUERIES_IN_FLIGHT.dec();
+		}
+		
+	}
+	
+	/**
+	 * Runs the search stages of search(String, ResultBuffer, boolean).
+	 * 
+	 * @param searchQuery
+	 * @param results
+	 * @param isBudgeted
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void searchStages(String searchQuery, ResultBuffer results, boolean isBudgeted) throws IOException, ParseException {
+		
+		// Prepare the buffer
+		results.clear(searchQuery);
+		resolveDocIDs(results);
+		
+		// Parse the query
+		query = parse(searchQuery);
+		search(query, results, isBudgeted);
+		
+		// Expand the query from the first stage, and search again
+		if (expander != null) {
+			Query expandedQuery = expander.expand(query, results);
+			if (expandedQuery != null) {
+				
+				// Results cut in the first stage stay flagged as truncated
+				boolean isTruncated = results.isTruncated();
+				query = expandedQuery;
+				results.clear(searchQuery);
+				search(query, results, isBudgeted);
+				if (isTruncated) {
+					results.setTruncated(true);
+				}
+				
+			}
+		}
+		
+	}
+	
+	/**
+	 * Searches the index with the parsed query, into the buffer.
+	 * 
+	 * @param query
+	 * @param results
+	 * @param isBudgeted
+	 * @throws IOException
+	 */
+	private void search(Query query, ResultBuffer results, boolean isBudgeted) throws IOException {
+		
+		// Search the index with pruning, if possible (the evaluator applies the budget itself)
+		if (evaluator != null) {
+			TopDocs hits = isBudgeted ? evaluator.search(query, LuceneConstants.MAX_SEARCH, budgetMillis, budgetDocs)
+									  : evaluator.search(query, LuceneConstants.MAX_SEARCH);
+			if (hits != null) {
+				results.fill(hits);
+				if (evaluator.isTruncated()) {
+					results.setTruncated(true);
+				}
+				return;
+			}
+		}
+		
+		// Search the index, within the budget
+		TopHitsCollector collector = new TopHitsCollector(results);
+		Collector limited = collector;
+		if (isBudgeted && budgetDocs > 0) {
+			limited = new WorkLimitingCollector(limited, budgetDocs);
+		}
+		if (isBudgeted && budgetMillis > 0) {
+			limited = new TimeLimitingCollector(limited, TimeLimitingCollector.getGlobalCounter(), budgetMillis);
+		}
+		try {
+			indexSearcher.search(query, limited);
+		} catch (TimeLimitingCollector.TimeExceededException e) {
+			results.setTruncated(true);
+		} catch (WorkLimitingCollector.WorkExceededException e) {
+			results.setTruncated(true);
+		}
+		collector.finish();
+		
+	}
+	
+	/**
+	 * Sets the buffer's docID lookup table: the numeric docID map if the index has one,
+	 * the field cache otherwise.
+	 * 
+	 * @param results
+	 * @throws IOException
+	 */
+	public void resolveDocIDs(ResultBuffer results) throws IOException {
+		
+		int[] numericDocIDs = getNumericDocIDs();
+		if (numericDocIDs != null) {
+			results.setNumericDocIDs(numericDocIDs);
+		} else {
+			results.setDocIDs(getDocIDs());
+		}
+		
+	}
+	
+	/**
+	 * Returns the numeric docIDs of all the documents, by internal doc number,
+	 * or null if the index has no docID map (non-numeric docIDs).
+	 * The map is loaded once per index reader, and shared by all its searchers.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public int[] getNumericDocIDs() throws IOException {
+		
+		DocIDMap docIDMap = DocIDMap.get(indexSearcher.getIndexReader());
+		return docIDMap == null ? null : docIDMap.getIDs();
+		
+	}
+	
+	/**
+	 * Returns the external docIDs of all the documents, by internal doc number.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public String[] getDocIDs() throws IOException {
+		
+		if (docIDs == null) {
+			docIDs = FieldCache.DEFAULT.getStrings(indexSearcher.getIndexReader(), LuceneConstants.DOCID);
+		}
+		return docIDs;
+		
+	}
+	
+	/**
+	 * Searches the index with the given query, always scoring every posting.
+	 * 
+	 * @param searchQuery
 	 * @return
-	 * @throws CorruptIndexException
 	 * @throws IOException
+	 * @throws ParseException
 	 */
-	public Document getDocument(ScoreDoc scoreDoc) throws CorruptIndexException, IOException {
+	public TopDocs searchExhaustive(String searchQuery) throws IOException, ParseException {
+		
+		query = parse(searchQuery);
+		return indexSearcher.search(query, LuceneConstants.MAX_SEARCH);
 		
-		// Return the document
-		return indexSearcher.doc(scoreDoc.doc);
+	}
+	
+	/**
+	 * Parses the given query text, without searching.
+	 * With the analysis cache, a text is only parsed the first time (the query must not be modified).
+	 * 
+	 * @param searchQuery
+	 * @return
+	 * @throws ParseException
+	 */
+	public Query parse(String searchQuery) throws ParseException {
 		
+		if (analysisCache == null) {
+			return queryParser.parse(escapeQuery(searchQuery));
+		}
+		
+		Query parsed = analysisCache.get(searchQuery);
+		if (parsed == null) {
+			parsed = queryParser.parse(escapeQuery(searchQuery));
+			analysisCache.put(searchQuery, parsed);
+		}
+		return parsed;
+		
+	}
+
+	
+	/**
+	 * Returns the searched fields.
+	 * 
+	 * @return
+	 */
+	public String[] getFields() {
+		return fields;
+	}
+	
+	/**
+	 * Returns the underlying index searcher.
+	 * 
+	 * @return
+	 */
+	public IndexSearcher getIndexSearcher() {
+		return indexSearcher;
+	}
+	
+	/**
+	 * Returns the pruning evaluator (null if pruning is off).
+	 * 
+	 * @return
+	 */
+	public MaxScoreEvaluator getEvaluator() {
+		return evaluator;
 	}
 
 	/**
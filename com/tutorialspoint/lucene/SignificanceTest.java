@@ -0,0 +1,469 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Paired significance tests between two runs, over the per-query AP of the queries they share:
+ * 	- Paired t-test 	(two-sided, Student's t distribution)
+ * 	- Bootstrap 		(resampling the centered AP differences, with a 95% confidence interval)
+ * 	- Permutation 		(randomization test, swapping the runs' AP per query at random)
+ * 
+ * The resamplings are split into fixed-size chunks, run on a fork-join pool.
+ * Every chunk draws from its own generator, seeded from the seed and the chunk number,
+ * so the p-values only depend on the seed, never on the number of threads.
+ * 
+ * @author amir
+ * 
+ */
+public class SignificanceTest {
+
+	private static final int CHUNK = 4096; 	// Resamplings per fork-join task
+	
+	private String[] queryIDs; 			// The shared queries
+	private double[] a; 				// AP per query, run A
+	private double[] b; 				// AP per query, run B
+	private double[] diffs; 			// A - B per query
+	private double meanDiff; 			// Observed mean difference
+	private long seed; 					// Seed of the resamplings
+	private int threads; 				// Size of the fork-join pool
+	
+	/**
+	 * Constructor, pairing the queries both runs were evaluated on.
+	 * 
+	 * @param runA
+	 * @param runB
+	 * @param seed
+	 * @param threads
+	 */
+	public SignificanceTest(Benchmark runA, Benchmark runB, long seed, int threads) {
+		
+		this.seed = seed;
+		this.threads = threads;
+		
+		// Pair the shared queries, in a fixed order (for reproducible resamplings)
+		List<String> shared = new ArrayList<String>();
+		for (String queryID : runA.getQueryIDs()) {
+			if (runB.getQuery(queryID) != null) {
+				shared.add(queryID);
+			}
+		}
+		queryIDs = shared.toArray(new String[shared.size()]);
+		Arrays.sort(queryIDs);
+		
+		a = new double[queryIDs.length];
+		b = new double[queryIDs.length];
+		diffs = new double[queryIDs.length];
+		for (int i = 0; i < queryIDs.length; i++) {
+			a[i] = runA.getQuery(queryIDs[i]).averagePrecision;
+			b[i] = runB.getQuery(queryIDs[i]).averagePrecision;
+			diffs[i] = a[i] - b[i];
+			meanDiff += diffs[i];
+		}
+		if (queryIDs.length > 0) {
+			meanDiff /= queryIDs.length;
+		}
+		
+	}
+	
+	/**
+	 * Returns the number of paired queries.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return queryIDs.length;
+	}
+	
+	/**
+	 * Returns the mean AP difference (A - B).
+	 * 
+	 * @return
+	 */
+	public double getMeanDifference() {
+		return meanDiff;
+	}
+	
+	/**
+	 * Returns the two-sided p-value of the paired t-test.
+	 * 
+	 * @return
+	 */
+	public double tTest() {
+		
+		int n = diffs.length;
+		if (n < 2) {
+			return 1;
+		}
+		
+		double variance = 0;
+		for (double diff : diffs) {
+			variance += (diff - meanDiff) * (diff - meanDiff);
+		}
+		variance /= n - 1;
+		if (variance == 0) {
+			return meanDiff == 0 ? 1 : 0;
+		}
+		
+		// P(|T| >= |t|) = I_{df/(df+t^2)}(df/2, 1/2)
+		double t = meanDiff / Math.sqrt(variance / n);
+		double df = n - 1;
+		return incompleteBeta(df / (df + t * t), df / 2, 0.5);
+		
+	}
+	
+	/**
+	 * Runs the bootstrap test: the differences are centered on 0 (the null hypothesis),
+	 * resampled with replacement, and the p-value is the share of resampled means
+	 * at least as far from 0 as the observed one.
+	 * Also returns the 95% percentile interval of the (uncentered) mean difference.
+	 * 
+	 * @param samples
+	 * @return {p-value, interval low, interval high}
+	 */
+	public double[] bootstrap(int samples) {
+		
+		int n = diffs.length;
+		if (n == 0 || samples <= 0) {
+			return new double[] {1, 0, 0};
+		}
+		
+		// Resampled means, every chunk fills its own slice
+		double[] means = new double[samples];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new BootstrapTask(means, 0, chunks(samples)));
+		} finally {
+			pool.shutdown();
+		}
+		
+		// Centered resampled mean = resampled mean - observed mean
+		long extreme = 0;
+		double observed = Math.abs(meanDiff) - 1e-12;
+		for (double mean : means) {
+			if (Math.abs(mean - meanDiff) >= observed) {
+				extreme++;
+			}
+		}
+		
+		Arrays.sort(means);
+		int low = (int) Math.floor(0.025 * (samples - 1));
+		int high = (int) Math.ceil(0.975 * (samples - 1));
+		return new double[] {(extreme + 1.0) / (samples + 1.0), means[low], means[high]};
+		
+	}
+	
+	/**
+	 * Runs the permutation (randomization) test: under the null hypothesis the two runs' AP
+	 * are exchangeable per query, so every permutation flips the sign of each difference at random.
+	 * The p-value is the share of permutations whose mean is at least as far from 0 as the observed one.
+	 * 
+	 * @param permutations
+	 * @return
+	 */
+	public double permutation(int permutations) {
+		
+		if (diffs.length == 0 || permutations <= 0) {
+			return 1;
+		}
+		
+		long extreme;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			extreme = pool.invoke(new PermutationTask(permutations, 0, chunks(permutations)));
+		} finally {
+			pool.shutdown();
+		}
+		
+		return (extreme + 1.0) / (permutations + 1.0);
+		
+	}
+	
+	/**
+	 * Runs all the tests and prints them.
+	 * 
+	 * @param nameA
+	 * @param nameB
+	 * @param samples
+	 * @param permutations
+	 */
+	public void print(String nameA, String nameB, int samples, int permutations) {
+		
+		double mapA = 0;
+		double mapB = 0;
+		for (int i = 0; i < a.length; i++) {
+			mapA += a[i];
+			mapB += b[i];
+		}
+		if (a.length > 0) {
+			mapA /= a.length;
+			mapB /= b.length;
+		}
+		
+		long start = System.nanoTime();
+		double tTest = tTest();
+		double[] bootstrap = bootstrap(samples);
+		double permutation = permutation(permutations);
+		long millis = (System.nanoTime() - start) / 1000000;
+		
+		System.out.println("\nSignificance (" + queryIDs.length + " paired queries, seed " + seed + ", " + threads + " threads, " + millis + " ms):");
+		System.out.printf("\tMAP %s = %.4f, MAP %s = %.4f, difference = %+.4f\n", nameA, mapA, nameB, mapB, meanDiff);
+		System.out.printf("\tPaired t-test: p = %.4f\n", tTest);
+		System.out.printf("\tBootstrap (%d samples): p = %.4f, 95%% interval [%+.4f, %+.4f]\n", samples, bootstrap[0], bootstrap[1], bootstrap[2]);
+		System.out.printf("\tPermutation (%d permutations): p = %.4f\n", permutations, permutation);
+		
+	}
+	
+	/**
+	 * Returns the number of chunks for the given number of resamplings.
+	 * 
+	 * @param count
+	 * @return
+	 */
+	private static int chunks(int count) {
+		return (count + CHUNK - 1) / CHUNK;
+	}
+	
+	/**
+	 * Returns the generator of a chunk: it only depends on the seed and the chunk number.
+	 * The seed is mixed with the chunk number (SplitMix64), so the chunks' streams are independent.
+	 * 
+	 * @param chunk
+	 * @return
+	 */
+	private Random random(int chunk) {
+		return new Random(CollectionGenerator.mix(seed, chunk));
+	}
+	
+	/**
+	 * Fills the bootstrap means of a range of chunks.
+	 */
+	private class BootstrapTask extends RecursiveTask<Void> {
+
+		private static final long serialVersionUID = 1L;
+		
+		private double[] means; 	// All the resampled means
+		private int from; 			// First chunk
+		private int to; 			// Last chunk (exclusive)
+		
+		BootstrapTask(double[] means, int from, int to) {
+			this.means = means;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Void compute() {
+			
+			// Split down to single chunks
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				BootstrapTask left = new BootstrapTask(means, from, middle);
+				left.fork();
+				new BootstrapTask(means, middle, to).compute();
+				left.join();
+				return null;
+			}
+			
+			int n = diffs.length;
+			Random random = random(from);
+			int end = Math.min(means.length, (from + 1) * CHUNK);
+			for (int s = from * CHUNK; s < end; s++) {
+				double sum = 0;
+				for (int i = 0; i < n; i++) {
+					sum += diffs[random.nextInt(n)];
+				}
+				means[s] = sum / n;
+			}
+			return null;
+			
+		}
+		
+	}
+	
+	/**
+	 * Counts the extreme permutations of a range of chunks.
+	 */
+	private class PermutationTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int permutations; 	// Total permutations
+		private int from; 			// First chunk
+		private int to; 			// Last chunk (exclusive)
+		
+		PermutationTask(int permutations, int from, int to) {
+			this.permutations = permutations;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Long compute() {
+			
+			// Split down to single chunks
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				PermutationTask left = new PermutationTask(permutations, from, middle);
+				left.fork();
+				long right = new PermutationTask(permutations, middle, to).compute();
+				return left.join() + right;
+			}
+			
+			int n = diffs.length;
+			double observed = Math.abs(meanDiff * n) - 1e-12;
+			Random random = random(from);
+			long extreme = 0;
+			int end = Math.min(permutations, (from + 1) * CHUNK);
+			for (int p = from * CHUNK; p < end; p++) {
+				
+				// One random bit per query decides its sign, 64 at a time
+				double sum = 0;
+				long bits = 0;
+				for (int i = 0; i < n; i++) {
+					if ((i & 63) == 0) {
+						bits = random.nextLong();
+					}
+					sum += (bits & 1) == 0 ? diffs[i] : -diffs[i];
+					bits >>>= 1;
+				}
+				if (Math.abs(sum) >= observed) {
+					extreme++;
+				}
+				
+			}
+			return extreme;
+			
+		}
+		
+	}
+	
+	/**
+	 * Returns the regularized incomplete beta function I_x(a, b).
+	 * Taken from: Numerical Recipes, 6.4 (continued fraction, with the symmetry relation).
+	 * 
+	 * @param x
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static double incompleteBeta(double x, double a, double b) {
+		
+		if (x <= 0) {
+			return 0;
+		}
+		if (x >= 1) {
+			return 1;
+		}
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+		if (x < (a + 1) / (a + b + 2)) {
+			return front * betaFraction(x, a, b) / a;
+		}
+		return 1 - front * betaFraction(1 - x, b, a) / b;
+		
+	}
+	
+	/**
+	 * Helper method for incompleteBeta().
+	 * Evaluates the continued fraction with the modified Lentz's method.
+	 * 
+	 * @param x
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static double betaFraction(double x, double a, double b) {
+		
+		double tiny = 1e-300;
+		double c = 1;
+		double d = 1 - (a + b) * x / (a + 1);
+		d = 1 / (Math.abs(d) < tiny ? tiny : d);
+		double h = d;
+		for (int m = 1; m <= 300; m++) {
+			
+			// Even step
+			double aa = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+			d = 1 + aa * d;
+			d = 1 / (Math.abs(d) < tiny ? tiny : d);
+			c = 1 + aa / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			h *= d * c;
+			
+			// Odd step
+			aa = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+			d = 1 + aa * d;
+			d = 1 / (Math.abs(d) < tiny ? tiny : d);
+			c = 1 + aa / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			double delta = d * c;
+			h *= delta;
+			
+			if (Math.abs(delta - 1) < 1e-12) {
+				break;
+			}
+			
+		}
+		return h;
+		
+	}
+	
+	/**
+	 * Returns ln(Gamma(x)), with the Lanczos approximation.
+	 * 
+	 * @param x
+	 * @return
+	 */
+	private static double logGamma(double x) {
+		
+		double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+								 -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+		double y = x;
+		double tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for (double coefficient : coefficients) {
+			series += coefficient / ++y;
+		}
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+		
+	}
+	
+	/**
+	 * Compares two binary runs.
+	 * 
+	 * Usage: SignificanceTest <truthFile> <runA.bin> <runB.bin> [<permutations> [<seed> [<threads>]]]
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		
+		if (args.length < 3) {
+			System.out.println("Usage: SignificanceTest <truthFile> <runA.bin> <runB.bin> [<permutations> [<seed> [<threads>]]]");
+			return;
+		}
+		
+		int permutations = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		
+		try {
+			
+			Benchmark runA = new Benchmark(args[0]);
+			runA.evaluate(new BinaryRunReader(args[1]));
+			Benchmark runB = new Benchmark(args[0]);
+			runB.evaluate(new BinaryRunReader(args[2]));
+			
+			new SignificanceTest(runA, runB, seed, threads).print(args[1], args[2], permutations, permutations);
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
+}
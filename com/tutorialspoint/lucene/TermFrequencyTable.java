@@ -0,0 +1,506 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Accumulates term -> frequency counts in a fixed amount of memory, for the stop-list discovery.
+ * The counts live off-heap, in an open-addressing hash table (linear probing) over direct buffers:
+ * 	- Slots: 	<key offset + 1 (0 = empty), key hash, count> 	16 bytes per slot
+ * 	- Keys: 	<length, UTF-8 bytes> 							appended to an arena
+ * 
+ * When the table is half full or the arena is full, the entries are sorted by key and spilled
+ * to a run file on disk, and the table starts over. top() merges the runs (summing the counts
+ * of equal keys) into the top-k terms, so the heap only ever holds the sort order of one table and k terms.
+ * Every MAX_RUNS runs are merged into one, to bound the number of open files.
+ * 
+ * @author amir
+ * 
+ */
+public class TermFrequencyTable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int SLOT_SIZE = 16;
+	private static final int MAX_RUNS = 64; 	// Runs merged at once (open files)
+	
+	private ByteBuffer slots; 			// The hash table (off-heap)
+	private ByteBuffer keys; 			// The key arena (off-heap)
+	private int capacity; 				// Number of slots (a power of 2)
+	private int size; 					// Number of keys in the table
+	private List<File> runs; 			// Spilled runs, sorted by key
+	private long spilledEntries; 		// Entries written to the runs
+	
+	/**
+	 * Constructor.
+	 * A quarter of the memory goes to the slots, the rest to the keys.
+	 * 
+	 * @param memoryBytes
+	 */
+	public TermFrequencyTable(long memoryBytes) {
+		
+		memoryBytes = Math.max(1 << 16, Math.min(memoryBytes, 1L << 31));
+		capacity = Integer.highestOneBit((int) Math.min(memoryBytes / 4 / SLOT_SIZE, 1 << 26));
+		slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+		keys = ByteBuffer.allocateDirect((int) Math.min(memoryBytes - capacity * SLOT_SIZE, Integer.MAX_VALUE));
+		runs = new ArrayList<File>();
+		
+	}
+	
+	/**
+	 * Adds to the count of the term.
+	 * 
+	 * @param term
+	 * @param count
+	 * @throws IOException
+	 */
+	public void add(String term, long count) throws IOException {
+		
+		byte[] key = term.getBytes(UTF8);
+		
+		// Spill first if a new key may not fit
+		if (size >= capacity / 2 || keys.remaining() < 4 + key.length) {
+			spill();
+			if (keys.remaining() < 4 + key.length) {
+				throw new IOException("Term of " + key.length + " bytes is larger than the table's key memory");
+			}
+		}
+		
+		int hash = hash(key);
+		int mask = capacity - 1;
+		int slot = hash & mask;
+		while (true) {
+			
+			int position = slot * SLOT_SIZE;
+			int offset = slots.getInt(position) - 1;
+			
+			// Empty slot, insert the key
+			if (offset < 0) {
+				int keyOffset = keys.position();
+				keys.putInt(key.length);
+				keys.put(key);
+				slots.putInt(position, keyOffset + 1);
+				slots.putInt(position + 4, hash);
+				slots.putLong(position + 8, count);
+				size++;
+				return;
+			}
+			
+			// Same key, add to its count
+			if (slots.getInt(position + 4) == hash && equals(offset, key)) {
+				slots.putLong(position + 8, slots.getLong(position + 8) + count);
+				return;
+			}
+			
+			slot = (slot + 1) & mask;
+			
+		}
+		
+	}
+	
+	/**
+	 * Returns the k most frequent terms, most frequent first.
+	 * The table can't be used afterwards.
+	 * 
+	 * @param k
+	 * @return
+	 * @throws IOException
+	 */
+	public LinkedHashMap<String,Long> top(int k) throws IOException {
+		
+		// The k largest counts, the smallest on top
+		PriorityQueue<Object[]> heap = new PriorityQueue<Object[]>(k + 1, new Comparator<Object[]>() {
+			public int compare(Object[] a, Object[] b) {
+				return ((Long) a[1]).compareTo((Long) b[1]);
+			}
+		});
+		
+		if (runs.isEmpty()) {
+			
+			// Everything fits in the table
+			for (int slot = 0; slot < capacity; slot++) {
+				int position = slot * SLOT_SIZE;
+				int offset = slots.getInt(position) - 1;
+				if (offset >= 0) {
+					offer(heap, k, readKey(offset), slots.getLong(position + 8));
+				}
+			}
+			
+		} else {
+			
+			// Spill the rest, and merge the runs
+			spill();
+			merge(runs, null, heap, k);
+			runs.clear();
+			
+		}
+		
+		// Most frequent first
+		List<Object[]> entries = new ArrayList<Object[]>();
+		while (!heap.isEmpty()) {
+			entries.add(0, heap.poll());
+		}
+		LinkedHashMap<String,Long> top = new LinkedHashMap<String,Long>();
+		for (Object[] entry : entries) {
+			top.put(new String((byte[]) entry[0], UTF8), (Long) entry[1]);
+		}
+		return top;
+		
+	}
+	
+	/**
+	 * Returns the number of runs spilled to disk.
+	 * 
+	 * @return
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+	
+	/**
+	 * Returns the number of entries spilled to disk (a term counts once per run it's in).
+	 * 
+	 * @return
+	 */
+	public long getSpilledEntries() {
+		return spilledEntries;
+	}
+	
+	/**
+	 * Keeps the term if it's one of the k most frequent so far.
+	 * 
+	 * @param heap
+	 * @param k
+	 * @param key
+	 * @param count
+	 */
+	private static void offer(PriorityQueue<Object[]> heap, int k, byte[] key, long count) {
+		
+		if (heap.size() < k) {
+			heap.add(new Object[] {key, count});
+		} else if (k > 0 && count > (Long) heap.peek()[1]) {
+			heap.poll();
+			heap.add(new Object[] {key, count});
+		}
+		
+	}
+	
+	/**
+	 * Sorts the table's entries by key, writes them to a new run, and empties the table.
+	 * 
+	 * @throws IOException
+	 */
+	private void spill() throws IOException {
+		
+		if (size == 0) {
+			return;
+		}
+		
+		// The used slots, sorted by key
+		int[] used = new int[size];
+		int count = 0;
+		for (int slot = 0; slot < capacity; slot++) {
+			if (slots.getInt(slot * SLOT_SIZE) != 0) {
+				used[count++] = slot;
+			}
+		}
+		sort(used, 0, count - 1);
+		
+		// Format: <length, bytes, count> entries, by key
+		File run = File.createTempFile("terms", ".run");
+		run.deleteOnExit();
+		DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 65536));
+		try {
+			for (int i = 0; i < count; i++) {
+				int position = used[i] * SLOT_SIZE;
+				byte[] key = readKey(slots.getInt(position) - 1);
+				outputStream.writeInt(key.length);
+				outputStream.write(key);
+				outputStream.writeLong(slots.getLong(position + 8));
+			}
+		} finally {
+			outputStream.close();
+		}
+		runs.add(run);
+		spilledEntries += count;
+		
+		// Too many runs, merge them into one
+		if (runs.size() == MAX_RUNS) {
+			File merged = File.createTempFile("terms", ".run");
+			merged.deleteOnExit();
+			DataOutputStream mergedStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), 65536));
+			try {
+				merge(runs, mergedStream, null, 0);
+			} finally {
+				mergedStream.close();
+			}
+			runs.clear();
+			runs.add(merged);
+		}
+		
+		// Start over
+		for (int position = 0; position < capacity * SLOT_SIZE; position += 8) {
+			slots.putLong(position, 0);
+		}
+		keys.clear();
+		size = 0;
+		
+	}
+	
+	/**
+	 * A run being merged, with its current entry.
+	 */
+	private static class RunReader {
+		DataInputStream inputStream;
+		byte[] key; 		// Current key (null when the run is done)
+		long count; 		// Current count
+		
+		RunReader(File run) throws IOException {
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 65536));
+			next();
+		}
+		
+		void next() throws IOException {
+			try {
+				key = new byte[inputStream.readInt()];
+				inputStream.readFully(key);
+				count = inputStream.readLong();
+			} catch (EOFException e) {
+				key = null;
+				inputStream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Merges the runs, summing the counts of equal keys, into a new run, or into the top-k heap.
+	 * The merged runs are deleted.
+	 * 
+	 * @param runs
+	 * @param outputStream 	The new run (null to merge into the heap)
+	 * @param heap
+	 * @param k
+	 * @throws IOException
+	 */
+	private static void merge(List<File> runs, DataOutputStream outputStream, PriorityQueue<Object[]> heap, int k) throws IOException {
+		
+		PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+			public int compare(RunReader a, RunReader b) {
+				return compareKeys(a.key, b.key);
+			}
+		});
+		
+		try {
+			
+			for (File run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.key != null) {
+					readers.add(reader);
+				}
+			}
+			
+			while (!readers.isEmpty()) {
+				
+				// Sum the key over all the runs it's in
+				RunReader reader = readers.poll();
+				byte[] key = reader.key;
+				long count = reader.count;
+				advance(readers, reader);
+				while (!readers.isEmpty() && compareKeys(readers.peek().key, key) == 0) {
+					reader = readers.poll();
+					count += reader.count;
+					advance(readers, reader);
+				}
+				if (outputStream != null) {
+					outputStream.writeInt(key.length);
+					outputStream.write(key);
+					outputStream.writeLong(count);
+				} else {
+					offer(heap, k, key, count);
+				}
+				
+			}
+			
+		} finally {
+			for (RunReader reader : readers) {
+				reader.inputStream.close();
+			}
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Moves the reader to its next entry, and puts it back in the queue unless it's done.
+	 * 
+	 * @param readers
+	 * @param reader
+	 * @throws IOException
+	 */
+	private static void advance(PriorityQueue<RunReader> readers, RunReader reader) throws IOException {
+		
+		reader.next();
+		if (reader.key != null) {
+			readers.add(reader);
+		}
+		
+	}
+	
+	/**
+	 * Sorts the slots by key (quicksort, over the off-heap keys).
+	 * 
+	 * @param used
+	 * @param low
+	 * @param high
+	 */
+	private void sort(int[] used, int low, int high) {
+		
+		while (low < high) {
+			
+			int pivot = used[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compareSlots(used[i], pivot) < 0) {
+					i++;
+				}
+				while (compareSlots(used[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = used[i];
+					used[i] = used[j];
+					used[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			
+			// Recurse into the smaller part, loop on the larger one
+			if (j - low < high - i) {
+				sort(used, low, j);
+				low = i;
+			} else {
+				sort(used, i, high);
+				high = j;
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Compares the keys of two slots, as unsigned bytes (the order of the runs).
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private int compareSlots(int a, int b) {
+		
+		int offsetA = slots.getInt(a * SLOT_SIZE) - 1;
+		int offsetB = slots.getInt(b * SLOT_SIZE) - 1;
+		int lengthA = keys.getInt(offsetA);
+		int lengthB = keys.getInt(offsetB);
+		int length = Math.min(lengthA, lengthB);
+		for (int i = 0; i < length; i++) {
+			int diff = (keys.get(offsetA + 4 + i) & 0xFF) - (keys.get(offsetB + 4 + i) & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return lengthA - lengthB;
+		
+	}
+	
+	/**
+	 * Compares two keys, as unsigned bytes.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static int compareKeys(byte[] a, byte[] b) {
+		
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return a.length - b.length;
+		
+	}
+	
+	/**
+	 * Checks if the key at the arena offset equals the given key.
+	 * 
+	 * @param offset
+	 * @param key
+	 * @return
+	 */
+	private boolean equals(int offset, byte[] key) {
+		
+		if (keys.getInt(offset) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (keys.get(offset + 4 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+		
+	}
+	
+	/**
+	 * Copies the key at the arena offset to the heap.
+	 * 
+	 * @param offset
+	 * @return
+	 */
+	private byte[] readKey(int offset) {
+		
+		byte[] key = new byte[keys.getInt(offset)];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = keys.get(offset + 4 + i);
+		}
+		return key;
+		
+	}
+	
+	/**
+	 * Hashes the key (FNV-1a, with a final mix so linear probing spreads).
+	 * 
+	 * @param key
+	 * @return
+	 */
+	private static int hash(byte[] key) {
+		
+		int hash = 0x811C9DC5;
+		for (byte b : key) {
+			hash ^= b & 0xFF;
+			hash *= 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		return hash;
+		
+	}
+	
+}
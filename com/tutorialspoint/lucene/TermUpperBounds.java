@@ -0,0 +1,189 @@
+package com.tutorialspoint.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.Similarity;
+
+/**
+ * Holds the per-term score upper bounds, used for dynamic pruning (MaxScore).
+ * For every term we keep the maximum of tf(freq) * norm(doc) over its postings.
+ * This is the query-independent part of the term's score, so multiplying it by
+ * the term's normalized query weight gives an upper bound on its contribution.
+ * 
+ * The bounds are saved in the index directory, next to the index files.
+ * 
+ * @author amir
+ * 
+ */
+public class TermUpperBounds {
+
+	private Map<Term,Float> bounds; 		// Dictionary of term -> max(tf * norm)
+
+	/**
+	 * Constructor.
+	 * 
+	 */
+	public TermUpperBounds() {
+
+		// Initialize the dictionary
+		bounds = new HashMap<Term,Float>();
+
+	}
+
+	/**
+	 * Computes the upper bounds of all the terms in the given fields.
+	 * This is a full postings scan, so it's done once, right after indexing.
+	 * 
+	 * @param reader
+	 * @param fields
+	 * @param similarity
+	 * @return
+	 * @throws IOException
+	 */
+	public static TermUpperBounds compute(IndexReader reader, String[] fields, Similarity similarity) throws IOException {
+
+		TermUpperBounds upperBounds = new TermUpperBounds();
+
+		for (String field : fields) {
+
+			// Fields without norms score with norm = 1
+			byte[] norms = reader.norms(field);
+
+			// Iterate over all the terms of the field
+			TermEnum terms = reader.terms(new Term(field, ""));
+			TermDocs td = reader.termDocs();
+			try {
+				do {
+
+					Term term = terms.term();
+					if (term == null || !term.field().equals(field)) {
+						break;
+					}
+
+					// Find the best tf * norm over the term's postings
+					float max = 0;
+					td.seek(terms);
+					while (td.next()) {
+						float value = similarity.tf(td.freq());
+						if (norms != null) {
+							value *= similarity.decodeNormValue(norms[td.doc()]);
+						}
+						if (value > max) {
+							max = value;
+						}
+					}
+					upperBounds.bounds.put(term, max);
+
+				} while (terms.next());
+			} finally {
+				td.close();
+				terms.close();
+			}
+
+		}
+
+		return upperBounds;
+
+	}
+
+	/**
+	 * Returns the term's upper bound (tf * norm), or 0 if the term doesn't exist.
+	 * 
+	 * @param term
+	 * @return
+	 */
+	public float get(Term term) {
+
+		Float bound = bounds.get(term);
+		return bound == null ? 0 : bound;
+
+	}
+
+	/**
+	 * Returns the number of terms.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return bounds.size();
+	}
+
+	/**
+	 * Saves the upper bounds to the index directory.
+	 * 
+	 * @param indexDirectoryPath
+	 * @throws IOException
+	 */
+	public void save(String indexDirectoryPath) throws IOException {
+
+		DataOutputStream outputStream = null;
+
+		try {
+
+			File file = new File(indexDirectoryPath, LuceneConstants.UPPER_BOUNDS_FILE);
+			outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+			// Format: <count> followed by <field, text, bound> triplets
+			outputStream.writeInt(bounds.size());
+			for (Map.Entry<Term,Float> entry : bounds.entrySet()) {
+				outputStream.writeUTF(entry.getKey().field());
+				outputStream.writeUTF(entry.getKey().text());
+				outputStream.writeFloat(entry.getValue());
+			}
+
+		} finally {
+			if (outputStream != null) {
+				outputStream.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Loads the upper bounds from the index directory.
+	 * 
+	 * @param indexDirectoryPath
+	 * @return
+	 * @throws IOException
+	 */
+	public static TermUpperBounds load(String indexDirectoryPath) throws IOException {
+
+		TermUpperBounds upperBounds = new TermUpperBounds();
+		DataInputStream inputStream = null;
+
+		try {
+
+			File file = new File(indexDirectoryPath, LuceneConstants.UPPER_BOUNDS_FILE);
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+			int count = inputStream.readInt();
+			for (int i = 0; i < count; i++) {
+				String field = inputStream.readUTF();
+				String text = inputStream.readUTF();
+				upperBounds.bounds.put(new Term(field, text), inputStream.readFloat());
+			}
+
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+
+		return upperBounds;
+
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Collects the top hits of a query straight into a ResultBuffer.
+ * Works like TopScoreDocCollector (same ranking, ties go to the lower docID),
+ * but keeps the heap in the buffer's primitive arrays instead of ScoreDoc objects.
+ * 
+ * @author amir
+ * 
+ */
+public class TopHitsCollector extends Collector {
+
+	private ResultBuffer results; 		// Where the hits are collected
+	private Scorer scorer; 				// Scores the current document
+	private int docBase; 				// Doc number offset of the current segment
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param results
+	 */
+	public TopHitsCollector(ResultBuffer results) {
+		
+		this.results = results;
+		
+	}
+	
+	/**
+	 * Sets the scorer of the current segment.
+	 * 
+	 */
+	public void setScorer(Scorer scorer) throws IOException {
+		this.scorer = scorer;
+	}
+	
+	/**
+	 * Moves on to the next segment.
+	 * 
+	 */
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.docBase = docBase;
+	}
+	
+	/**
+	 * The heap handles any order, so let BooleanScorer score out of order (like IndexSearcher does).
+	 * 
+	 */
+	public boolean acceptsDocsOutOfOrder() {
+		return true;
+	}
+	
+	/**
+	 * Collects a single hit into the heap.
+	 * 
+	 */
+	public void collect(int doc) throws IOException {
+		
+		add(docBase + doc, scorer.score());
+		
+	}
+	
+	/**
+	 * Adds a single hit (with a global doc number) into the heap.
+	 * For evaluators that compute the scores themselves.
+	 * 
+	 * @param doc
+	 * @param score
+	 */
+	public void add(int doc, float score) {
+		
+		results.totalHits++;
+		
+		int[] docs = results.docs;
+		float[] scores = results.scores;
+		
+		if (results.size < docs.length) {
+			
+			// The heap isn't full yet, add the hit at the bottom and sift it up
+			int i = results.size++;
+			docs[i] = doc;
+			scores[i] = score;
+			siftUp(i);
+			
+		} else {
+			
+			// The heap is full, the hit must beat the worst one (ties go to the lower docID)
+			if (score < scores[0] || (score == scores[0] && doc > docs[0])) {
+				return;
+			}
+			docs[0] = doc;
+			scores[0] = score;
+			siftDown(0, results.size);
+			
+		}
+		
+	}
+	
+	/**
+	 * Turns the heap into a ranked list (best first).
+	 * Must be called once, after the search.
+	 * 
+	 */
+	public void finish() {
+		
+		// Heap sort: repeatedly move the worst hit to the end
+		for (int end = results.size - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+		
+	}
+	
+	/**
+	 * Checks if hit i is worse than hit j.
+	 * 
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	private boolean lessThan(int i, int j) {
+		
+		float[] scores = results.scores;
+		if (scores[i] != scores[j]) {
+			return scores[i] < scores[j];
+		}
+		return results.docs[i] > results.docs[j];
+		
+	}
+	
+	/**
+	 * Moves hit i up the heap.
+	 * 
+	 * @param i
+	 */
+	private void siftUp(int i) {
+		
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!lessThan(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+		
+	}
+	
+	/**
+	 * Moves hit i down the heap (of the given size).
+	 * 
+	 * @param i
+	 * @param size
+	 */
+	private void siftDown(int i, int size) {
+		
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && lessThan(child + 1, child)) {
+				child++;
+			}
+			if (!lessThan(child, i)) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+		
+	}
+	
+	/**
+	 * Swaps hits i and j.
+	 * 
+	 * @param i
+	 * @param j
+	 */
+	private void swap(int i, int j) {
+		
+		int doc = results.docs[i];
+		results.docs[i] = results.docs[j];
+		results.docs[j] = doc;
+		
+		float score = results.scores[i];
+		results.scores[i] = results.scores[j];
+		results.scores[j] = score;
+		
+	}
+	
+}
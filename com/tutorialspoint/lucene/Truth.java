@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,6 +17,7 @@ import java.util.Map;
 public class Truth {
 
 	private Map<String,ArrayList<String>> multiMap; 		// <queryId, relevantDoc#1, relevantDoc#2, ...>
+	private Map<String,int[]> numericMap; 				// <queryId, sorted relevant docIDs> (null if a docID isn't numeric)
 	
 	/**
 	 * Constructor.
@@ -31,6 +33,36 @@ public class Truth {
 		// Load the truth file into the dictionary
 		load(truthPath);
 		
+		// Sorted int docIDs, when they're all numeric
+		numericMap = createNumericMap();
+		
+	}
+	
+	/**
+	 * Creates the numeric dictionary (queryID -> sorted relevant docIDs),
+	 * or returns null if a docID isn't a non-negative int in canonical form (see DocIDMap.parse()).
+	 * 
+	 * @return
+	 */
+	private Map<String,int[]> createNumericMap() {
+		
+		Map<String,int[]> map = new HashMap<String,int[]>();
+		for (Map.Entry<String,ArrayList<String>> entry : multiMap.entrySet()) {
+			
+			ArrayList<String> docIDs = entry.getValue();
+			int[] relevant = new int[docIDs.size()];
+			for (int i = 0; i < relevant.length; i++) {
+				relevant[i] = DocIDMap.parse(docIDs.get(i));
+				if (relevant[i] < 0) {
+					return null;
+				}
+			}
+			Arrays.sort(relevant);
+			map.put(entry.getKey(), relevant);
+			
+		}
+		return map;
+		
 	}
 	
 	/**
@@ -128,4 +160,23 @@ public class Truth {
 		
 	}
 	
+	/**
+	 * Checks if a given numeric docID is truly relevant to a given queryID (binary search, no Strings).
+	 * 
+	 * @param queryID
+	 * @param docID
+	 * @return
+	 */
+	public boolean isRelevant(String queryID, int docID) {
+		
+		// Non-numeric truth, compare the Strings
+		if (numericMap == null) {
+			return isRelevant(queryID, Integer.toString(docID));
+		}
+		
+		int[] relevant = numericMap.get(queryID);
+		return relevant != null && Arrays.binarySearch(relevant, docID) >= 0;
+		
+	}
+	
 }
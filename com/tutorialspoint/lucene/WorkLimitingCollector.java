@@ -0,0 +1,75 @@
+package com.tutorialspoint.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Wraps a collector, and stops the search once the given number of documents were scored.
+ * Works like TimeLimitingCollector, but the budget is work instead of time,
+ * so it's deterministic: the same query is always cut at the same point.
+ * 
+ * @author amir
+ * 
+ */
+public class WorkLimitingCollector extends Collector {
+
+	/**
+	 * Thrown when the search goes over the budget.
+	 * The wrapped collector holds the hits collected so far.
+	 * 
+	 */
+	@SuppressWarnings("serial")
+	public static class WorkExceededException extends RuntimeException {
+		
+		public WorkExceededException(long docsAllowed) {
+			super("Work exceeded: " + docsAllowed + " documents scored");
+		}
+		
+	}
+	
+	private Collector collector; 		// The wrapped collector
+	private long docsAllowed; 			// The budget
+	private long docsCollected; 		// Documents scored so far
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param collector
+	 * @param docsAllowed
+	 */
+	public WorkLimitingCollector(Collector collector, long docsAllowed) {
+		
+		this.collector = collector;
+		this.docsAllowed = docsAllowed;
+		
+	}
+	
+	public void setScorer(Scorer scorer) throws IOException {
+		collector.setScorer(scorer);
+	}
+	
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		collector.setNextReader(reader, docBase);
+	}
+	
+	public boolean acceptsDocsOutOfOrder() {
+		return collector.acceptsDocsOutOfOrder();
+	}
+	
+	/**
+	 * Collects the hit, unless the budget is used up.
+	 * 
+	 */
+	public void collect(int doc) throws IOException {
+		
+		if (++docsCollected > docsAllowed) {
+			throw new WorkExceededException(docsAllowed);
+		}
+		collector.collect(doc);
+		
+	}
+	
+}
@@ -11,6 +11,7 @@ public class myQuery {
 
 	public double[] precisionAt; 		// prec@k array
 	public double averagePrecision; 	// AP
+	public boolean isTruncated; 		// The results were cut by the query budget
 	
 	/**
 	 * Constructor.
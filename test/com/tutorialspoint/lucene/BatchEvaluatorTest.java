@@ -0,0 +1,58 @@
+package com.tutorialspoint.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Batch evaluation returns the same top-k lists (docs, exact scores and totalHits) as the per-query search.
+ * 
+ * @author amir
+ * 
+ */
+public class BatchEvaluatorTest {
+
+	@Test
+	public void sameResultsAsPerQuerySearchBasic() throws Exception {
+		check(true);
+	}
+	
+	@Test
+	public void sameResultsAsPerQuerySearchAdvanced() throws Exception {
+		check(false);
+	}
+	
+	private void check(boolean isBasic) throws Exception {
+		
+		TestCollection collection = new TestCollection(42, 3000, 200, isBasic);
+		try {
+			
+			Searcher searcher = new Searcher(collection.indexDir, collection.analyzer, collection.fields);
+			
+			// Per query
+			TestCollection.Hits expected = new TestCollection.Hits();
+			ResultBuffer results = new ResultBuffer(LuceneConstants.MAX_SEARCH);
+			for (QueryRecord query : collection.queries) {
+				searcher.search(query.text, results);
+				expected.consume(query.id, results);
+			}
+			
+			// In batches (a small budget, so there are several)
+			TestCollection.Hits actual = new TestCollection.Hits();
+			BatchEvaluator evaluator = new BatchEvaluator(searcher, 64L * 10 * 3000);
+			evaluator.run(collection.queries, results, Collections.<ResultConsumer>singletonList(actual));
+			
+			assertTrue(evaluator.getQueriesBatched() > 0);
+			assertEquals(expected.lists, actual.lists);
+			searcher.close();
+			
+		} finally {
+			collection.delete();
+		}
+		
+	}
+	
+}
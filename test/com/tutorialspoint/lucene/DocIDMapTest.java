@@ -0,0 +1,59 @@
+package com.tutorialspoint.lucene;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * The docID map survives the zig-zag delta coding, and only canonical numbers are numeric docIDs.
+ * 
+ * @author amir
+ * 
+ */
+public class DocIDMapTest {
+
+	@Test
+	public void roundTrip() throws Exception {
+		
+		// Ascending, descending, deleted (-1) and extreme docIDs
+		Random random = new Random(5);
+		int[] ids = new int[10000];
+		for (int i = 0; i < ids.length; i++) {
+			switch (i % 4) {
+			case 0: ids[i] = i; break;
+			case 1: ids[i] = -1; break;
+			case 2: ids[i] = random.nextInt(Integer.MAX_VALUE); break;
+			default: ids[i] = i % 8 == 3 ? Integer.MAX_VALUE : 0;
+			}
+		}
+		
+		RAMDirectory directory = new RAMDirectory();
+		new DocIDMap(ids).save(directory);
+		assertArrayEquals(ids, DocIDMap.load(directory).getIDs());
+		
+	}
+	
+	@Test
+	public void missingMap() throws Exception {
+		assertNull(DocIDMap.load(new RAMDirectory()));
+	}
+	
+	@Test
+	public void onlyCanonicalNumbersAreNumeric() {
+		
+		assertEquals(7, DocIDMap.parse("7"));
+		assertEquals(0, DocIDMap.parse("0"));
+		assertEquals(-1, DocIDMap.parse("007"));
+		assertEquals(-1, DocIDMap.parse("+7"));
+		assertEquals(-1, DocIDMap.parse("-7"));
+		assertEquals(-1, DocIDMap.parse("doc7"));
+		assertEquals(-1, DocIDMap.parse("99999999999"));
+		
+	}
+	
+}
@@ -0,0 +1,83 @@
+package com.tutorialspoint.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TopDocs;
+import org.junit.Test;
+
+/**
+ * MaxScore returns the same rankings (docs and scores) as the exhaustive search, on a multi-segment index.
+ * 
+ * @author amir
+ * 
+ */
+public class MaxScoreEvaluatorTest {
+
+	@Test
+	public void sameRankingsAsExhaustiveSearchBasic() throws Exception {
+		check(true);
+	}
+	
+	@Test
+	public void sameRankingsAsExhaustiveSearchAdvanced() throws Exception {
+		check(false);
+	}
+	
+	private void check(boolean isBasic) throws Exception {
+		
+		// Flush every 700 documents, and don't merge, for several segments
+		Options options = new Options();
+		options.set("index.maxBufferedDocs", "700");
+		options.set("index.mergeFactor", "100");
+		options.set("index.mergeScheduler", "serial");
+		TestCollection collection = new TestCollection(7, 4000, 150, isBasic, new IndexProfile(options));
+		try {
+			
+			Searcher searcher = new Searcher(collection.indexDir, collection.analyzer, collection.fields);
+			assertTrue(searcher.getIndexSearcher().getIndexReader().getSequentialSubReaders().length > 1);
+			TermUpperBounds upperBounds = TermUpperBounds.compute(searcher.getIndexSearcher().getIndexReader(),
+					collection.fields, Similarity.getDefault());
+			searcher.setUpperBounds(upperBounds);
+			
+			// Some postings were actually skipped
+			long postingsScored = 0;
+			long postingsTotal = 0;
+			for (QueryRecord query : collection.queries) {
+				TopDocs pruned = searcher.search(query.text);
+				postingsScored += searcher.getEvaluator().getPostingsScored();
+				postingsTotal += searcher.getEvaluator().getPostingsTotal();
+				assertEquals(query.text, toString(searcher.searchExhaustive(query.text)), toString(pruned));
+			}
+			assertTrue(postingsScored < postingsTotal);
+			
+			// Both count term postings: when nothing can be pruned, every one of them is scored
+			IndexSearcher indexSearcher = searcher.getIndexSearcher();
+			MaxScoreEvaluator evaluator = new MaxScoreEvaluator(indexSearcher, upperBounds);
+			for (QueryRecord query : collection.queries) {
+				if (evaluator.search(searcher.parse(query.text), indexSearcher.maxDoc()) != null) {
+					assertEquals(query.text, evaluator.getPostingsTotal(), evaluator.getPostingsScored());
+				}
+			}
+			searcher.close();
+			
+		} finally {
+			collection.delete();
+		}
+		
+	}
+	
+	private static String toString(TopDocs hits) {
+		
+		StringBuilder list = new StringBuilder();
+		for (ScoreDoc scoreDoc : hits.scoreDocs) {
+			list.append(scoreDoc.doc).append(':').append(Float.floatToIntBits(scoreDoc.score)).append(' ');
+		}
+		return list.toString();
+		
+	}
+	
+}
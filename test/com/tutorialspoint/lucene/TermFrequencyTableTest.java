@@ -0,0 +1,73 @@
+package com.tutorialspoint.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The table's top-k counts match a HashMap's, in memory and after spilling to runs.
+ * 
+ * @author amir
+ * 
+ */
+public class TermFrequencyTableTest {
+
+	@Test
+	public void sameTopCountsInMemory() throws Exception {
+		check(64L * 1024 * 1024, false);
+	}
+	
+	@Test
+	public void sameTopCountsAfterSpilling() throws Exception {
+		check(1 << 16, true);
+	}
+	
+	private void check(long memoryBytes, boolean isSpilling) throws Exception {
+		
+		Random random = new Random(3);
+		TermFrequencyTable table = new TermFrequencyTable(memoryBytes);
+		final Map<String,Long> expected = new HashMap<String,Long>();
+		for (int i = 0; i < 200000; i++) {
+			
+			// Zipf-like terms, some of them non-ASCII
+			double u = random.nextDouble();
+			String term = (i % 7 == 0 ? "t\u00e9rm" : "term") + (int) (20000 * u * u * u);
+			long count = 1 + random.nextInt(3);
+			table.add(term, count);
+			Long previous = expected.get(term);
+			expected.put(term, previous == null ? count : previous + count);
+			
+		}
+		assertEquals(isSpilling, table.getRunCount() > 0);
+		
+		// The counts tie, so compare the top 100 counts, and every term's count
+		int k = 100;
+		LinkedHashMap<String,Long> top = table.top(k);
+		List<String> terms = new ArrayList<String>(expected.keySet());
+		Collections.sort(terms, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return expected.get(b).compareTo(expected.get(a));
+			}
+		});
+		
+		assertEquals(k, top.size());
+		int rank = 0;
+		for (Map.Entry<String,Long> entry : top.entrySet()) {
+			assertEquals(entry.getKey(), expected.get(entry.getKey()), entry.getValue());
+			assertEquals(expected.get(terms.get(rank++)), entry.getValue());
+		}
+		assertTrue(rank == k);
+		
+	}
+	
+}
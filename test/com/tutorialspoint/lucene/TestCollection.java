@@ -0,0 +1,143 @@
+package com.tutorialspoint.lucene;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.util.Version;
+
+/**
+ * A small random collection for the tests, indexed in a temporary directory.
+ * The vocabulary is small and Zipf-like, so queries match many documents, and many scores tie.
+ * 
+ * @author amir
+ * 
+ */
+class TestCollection {
+
+	private static final int VOCABULARY = 300;
+	
+	File dir; 							// Temporary directory (docs file and index)
+	String indexDir; 					// The index
+	String[] fields; 					// Its searchable fields
+	Analyzer analyzer; 					// Used for indexing and parsing
+	List<QueryRecord> queries; 			// Random queries over the vocabulary
+	
+	/**
+	 * Writes a random collection and indexes it, in the basic or advanced (title/body) layout.
+	 * 
+	 * @param seed
+	 * @param numDocs
+	 * @param numQueries
+	 * @param isBasic
+	 * @throws IOException
+	 */
+	TestCollection(long seed, int numDocs, int numQueries, boolean isBasic) throws IOException {
+		this(seed, numDocs, numQueries, isBasic, new IndexProfile(new Options()));
+	}
+	
+	/**
+	 * Same, indexed with the given build profile (e.g. to get several segments).
+	 * 
+	 * @param seed
+	 * @param numDocs
+	 * @param numQueries
+	 * @param isBasic
+	 * @param profile
+	 * @throws IOException
+	 */
+	TestCollection(long seed, int numDocs, int numQueries, boolean isBasic, IndexProfile profile) throws IOException {
+		
+		Random random = new Random(seed);
+		dir = File.createTempFile("lucene-test", "");
+		dir.delete();
+		dir.mkdirs();
+		
+		// ".I <id>" / ".W" / text, the title up to the first '.'
+		File docsFile = new File(dir, "docs.txt");
+		Writer writer = new FileWriter(docsFile);
+		for (int d = 1; d <= numDocs; d++) {
+			writer.write(".I " + d + "\n.W\n" + words(random, 1 + random.nextInt(5)) + ".\n");
+			int lines = 1 + random.nextInt(4);
+			for (int l = 0; l < lines; l++) {
+				writer.write(words(random, 1 + random.nextInt(15)) + "\n");
+			}
+		}
+		writer.close();
+		
+		queries = new ArrayList<QueryRecord>();
+		for (int q = 1; q <= numQueries; q++) {
+			queries.add(new QueryRecord(Integer.toString(q), words(random, 1 + random.nextInt(12))));
+		}
+		
+		analyzer = new WhitespaceAnalyzer(Version.LUCENE_36);
+		indexDir = new File(dir, "index").getPath();
+		Indexer indexer = new Indexer(indexDir, analyzer, isBasic, profile);
+		indexer.createIndex(docsFile.getPath());
+		indexer.close();
+		fields = indexer.getFields();
+		
+	}
+	
+	/**
+	 * Returns n random words, the low ones much more frequent.
+	 * 
+	 */
+	private static String words(Random random, int n) {
+		
+		StringBuilder words = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			double u = random.nextDouble();
+			words.append(i == 0 ? "" : " ").append("w").append((int) (VOCABULARY * u * u * u));
+		}
+		return words.toString();
+		
+	}
+	
+	/**
+	 * Deletes the temporary directory.
+	 * 
+	 */
+	void delete() {
+		delete(dir);
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	/**
+	 * A copy of a query's results.
+	 * 
+	 */
+	static class Hits implements ResultConsumer {
+		
+		List<String> lists = new ArrayList<String>(); 	// "docID:score" lists, one per query
+		
+		public void consume(String queryID, ResultBuffer results) {
+			lists.add(toString(results));
+		}
+		
+		static String toString(ResultBuffer results) {
+			StringBuilder list = new StringBuilder(results.getTotalHits() + " hits:");
+			for (int i = 0; i < results.size(); i++) {
+				list.append(' ').append(results.getDocID(i)).append(':').append(Float.floatToIntBits(results.getScore(i)));
+			}
+			return list.toString();
+		}
+		
+	}
+	
+}